@@ -0,0 +1,3 @@
+# Program : run_dist.sh
+# Description : Run the distributed version of the D-Cube algorithm with persistent workers
+java -cp ./DCube-2.0.jar dcube.dist.ProposedDist $@
@@ -0,0 +1,3 @@
+# Program : run_dist_worker.sh
+# Description : Run a worker of the distributed version of the D-Cube algorithm, which connects to the driver started by run_dist.sh --external
+java -cp ./DCube-2.0.jar dcube.dist.DistWorker $@
@@ -0,0 +1,3 @@
+# Program : run_parallel.sh
+# Description : Run the multi-core version of the D-Cube algorithm, which partitions the input tensor and merges the blocks found in the partitions
+java -cp ./DCube-2.0.jar dcube.parallel.ProposedParallel $@
@@ -0,0 +1,3 @@
+# Program : run_sweep_hadoop.sh
+# Description : Run the Hadoop version of the D-Cube algorithm for several configurations at once
+hadoop jar DCube-2.0.jar dcube.hadoop.SweepHadoop $@
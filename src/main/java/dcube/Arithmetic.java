@@ -57,6 +57,20 @@ public class Arithmetic implements IDensityMeasure {
         return density(sumOfPart, sumOfattributeLengthsPart);
     }
 
+    /**
+     * the mass of a sub-block is at most |B_n| * maxMasses[n] in every mode n,
+     * thus its density is at most the harmonic mean of maxMasses
+     */
+    public double upperBound(int[] maxMasses) {
+        double sumOfInverses = 0;
+        for(int dim = 0; dim < dimension; dim++) {
+            if(maxMasses[dim] == 0)
+                return 0;
+            sumOfInverses += 1.0 / maxMasses[dim];
+        }
+        return dimension / sumOfInverses;
+    }
+
     private double density(long sumOfPart, double sumOfCardinalities) {
         if(sumOfCardinalities == 0)
             return - 1;
@@ -0,0 +1,91 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package dcube;
+
+/**
+ * Attribute values whose masses were changed since the last call of clear(), used to report the changes of attribute-value masses
+ * in time proportional to the number of changed attribute values, not to the sum of the cardinalities
+ * The tracker shares the mass array with the caller, which should call changed(...) whenever a mass is modified
+ * @author kijungs
+ */
+public class AttValMassTracker {
+
+    private final int[][] attValToMass; // (n, i) -> mass of ith attribute value in the nth mode
+    private final int[][] attValToLastMass; // (n, i) -> mass of ith attribute value in the nth mode when clear() was called
+    private final boolean[][] attValToChanged; // (n, i) -> whether the mass of ith attribute value in the nth mode was changed
+    private final int[][] changedAttVals; // (n, j) -> jth changed attribute value in the nth mode
+    private final int[] changedNums; // n -> number of changed attribute values in the nth mode
+
+    /**
+     * @param attValToMass (n, i) -> mass of ith attribute value in the nth mode, whose changes are tracked
+     */
+    public AttValMassTracker(int[][] attValToMass) {
+        int dimension = attValToMass.length;
+        this.attValToMass = attValToMass;
+        attValToLastMass = new int[dimension][];
+        attValToChanged = new boolean[dimension][];
+        changedAttVals = new int[dimension][];
+        changedNums = new int[dimension];
+        for(int mode = 0; mode < dimension; mode++) {
+            attValToLastMass[mode] = attValToMass[mode].clone();
+            attValToChanged[mode] = new boolean[attValToMass[mode].length];
+            changedAttVals[mode] = new int[attValToMass[mode].length];
+        }
+    }
+
+    public void changed(int mode, int attVal) {
+        if(!attValToChanged[mode][attVal]) {
+            attValToChanged[mode][attVal] = true;
+            changedAttVals[mode][changedNums[mode]++] = attVal;
+        }
+    }
+
+    /**
+     * @return number of attribute values in the given mode whose masses were changed
+     */
+    public int numOfChanged(int mode) {
+        return changedNums[mode];
+    }
+
+    /**
+     * @return jth changed attribute value in the given mode
+     */
+    public int changedAttVal(int mode, int j) {
+        return changedAttVals[mode][j];
+    }
+
+    /**
+     * @return change of the mass of the jth changed attribute value in the given mode
+     */
+    public int change(int mode, int j) {
+        int attVal = changedAttVals[mode][j];
+        return attValToMass[mode][attVal] - attValToLastMass[mode][attVal];
+    }
+
+    /**
+     * forget the changes so far
+     */
+    public void clear() {
+        for(int mode = 0; mode < changedNums.length; mode++) {
+            for(int j = 0; j < changedNums[mode]; j++) {
+                int attVal = changedAttVals[mode][j];
+                attValToLastMass[mode][attVal] = attValToMass[mode][attVal];
+                attValToChanged[mode][attVal] = false;
+            }
+            changedNums[mode] = 0;
+        }
+    }
+}
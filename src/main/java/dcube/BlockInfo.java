@@ -50,6 +50,10 @@ public class BlockInfo {
         this.blockCardinalities = blockCardinalities;
     }
 
+    public int size() {
+        return size;
+    }
+
     public Set<Integer>[] getAttributeValues(int dimension) throws IOException {
         Set<Integer>[] modeToAttVals = new Set[dimension];
         for(int mode = 0; mode < dimension; mode++) {
@@ -31,6 +31,7 @@ public class BlockIterInfo {
     private int curIndex = 0;
     private ObjectOutputStream out = null;
     private String orderingFilePath = null;
+    private int[][] idToAttVal = null; // (n, j) -> attribute value recorded for index j in the nth mode, null if indices are attribute values
 
     public static boolean properBufferUsage(int modeLengthSum) {
         long memoryToUse = Runtime.getRuntime().maxMemory() * 7 / 10;
@@ -61,7 +62,18 @@ public class BlockIterInfo {
         }
     }
 
+    /**
+     * record the given attribute values instead of the indices passed to addIterInfo
+     * @param idToAttVal (n, j) -> attribute value for index j in the nth mode
+     */
+    public void setIdToAttVal(int[][] idToAttVal) {
+        this.idToAttVal = idToAttVal;
+    }
+
     public void addIterInfo(byte mode, int index) throws IOException {
+        if(idToAttVal != null) {
+            index = idToAttVal[mode][index];
+        }
         if(useBuffer) {
             modes[curIndex] = mode;
             attributes[curIndex++] = index;
@@ -0,0 +1,209 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package dcube;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * State of a single-machine run saved after each block, used to resume the run
+ * Only the blocks found so far are saved, and R is restored by removing them from the original tensor again,
+ * thus saving a checkpoint takes time proportional to the size of the new block, not to the size of R
+ * The info file is written last and renamed into place, so a checkpoint is either complete or absent
+ * @author kijungs
+ */
+public class Checkpoint {
+
+    private final static int VERSION = 2;
+
+    private final static String infoName = "info";
+    private final static String tempInfoName = "info_temp";
+    private final static String blockName = "block_";
+
+    private String checkpointPath;
+
+    // parameters of the run, used to validate the checkpoint
+    public int dimension;
+    public int[] cardinalities;
+    public long omega;
+    public long massOfRori;
+    public DensityMeasure densityMeasure;
+    public int policy;
+    public double theta;
+
+    // progress of the run
+    public int numOfBlocksDone;
+    public double bestAccuracy;
+    public long massOfR; // used to check R after it is restored
+    private int[] blockSizes;
+    private int[][] blockCardinalities;
+
+    public Checkpoint(String checkpointPath) {
+        this.checkpointPath = checkpointPath;
+    }
+
+    private String getFullPath(String fileName) {
+        return checkpointPath + File.separator + fileName;
+    }
+
+    public boolean exists() {
+        return new File(getFullPath(infoName)).exists();
+    }
+
+    /**
+     * save the state after the given blocks were found and removed from R
+     * @param R current tensor
+     * @param blocks blocks found so far
+     */
+    public void save(Tensor R, List<BlockInfo> blocks) throws IOException {
+
+        new File(checkpointPath).mkdirs();
+
+        int numOfBlocks = blocks.size();
+        int previousNumOfBlocks = numOfBlocksDone;
+
+        //blocks are never modified, thus only the new ones are written
+        for(int blockIndex = previousNumOfBlocks; blockIndex < numOfBlocks; blockIndex++) {
+            blocks.get(blockIndex).returnFileInfo(getFullPath(blockName + blockIndex));
+        }
+
+        numOfBlocksDone = numOfBlocks;
+        massOfR = R.mass;
+        blockSizes = new int[numOfBlocks];
+        blockCardinalities = new int[numOfBlocks][];
+        for(int blockIndex = 0; blockIndex < numOfBlocks; blockIndex++) {
+            BlockInfo block = blocks.get(blockIndex);
+            blockSizes[blockIndex] = block.size();
+            blockCardinalities[blockIndex] = block.blockCardinalities;
+        }
+
+        writeInfo();
+    }
+
+    private void writeInfo() throws IOException {
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(getFullPath(tempInfoName))));
+        out.writeInt(VERSION);
+        out.writeInt(dimension);
+        for(int mode = 0; mode < dimension; mode++) {
+            out.writeInt(cardinalities[mode]);
+        }
+        out.writeLong(omega);
+        out.writeLong(massOfRori);
+        out.writeUTF(densityMeasure.name());
+        out.writeInt(policy);
+        out.writeDouble(theta);
+        out.writeInt(numOfBlocksDone);
+        out.writeDouble(bestAccuracy);
+        out.writeLong(massOfR);
+        for(int blockIndex = 0; blockIndex < numOfBlocksDone; blockIndex++) {
+            out.writeInt(blockSizes[blockIndex]);
+            for(int mode = 0; mode < dimension; mode++) {
+                out.writeInt(blockCardinalities[blockIndex][mode]);
+            }
+        }
+        out.close();
+        Files.move(new File(getFullPath(tempInfoName)).toPath(), new File(getFullPath(infoName)).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * read the info file of the checkpoint
+     */
+    public void load() throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(getFullPath(infoName))));
+        int version = in.readInt();
+        if(version != VERSION) {
+            in.close();
+            throw new IOException("Unsupported checkpoint version: " + version);
+        }
+        dimension = in.readInt();
+        cardinalities = new int[dimension];
+        for(int mode = 0; mode < dimension; mode++) {
+            cardinalities[mode] = in.readInt();
+        }
+        omega = in.readLong();
+        massOfRori = in.readLong();
+        densityMeasure = DensityMeasure.valueOf(in.readUTF());
+        policy = in.readInt();
+        theta = in.readDouble();
+        numOfBlocksDone = in.readInt();
+        bestAccuracy = in.readDouble();
+        massOfR = in.readLong();
+        blockSizes = new int[numOfBlocksDone];
+        blockCardinalities = new int[numOfBlocksDone][dimension];
+        for(int blockIndex = 0; blockIndex < numOfBlocksDone; blockIndex++) {
+            blockSizes[blockIndex] = in.readInt();
+            for(int mode = 0; mode < dimension; mode++) {
+                blockCardinalities[blockIndex][mode] = in.readInt();
+            }
+        }
+        in.close();
+    }
+
+    /**
+     * check whether the checkpoint was taken from the same input and the same parameters
+     * @return null if the checkpoint is valid, the reason otherwise
+     */
+    public String validate(Tensor Rori, DensityMeasure densityMeasure, int policy, double theta, int blockNum) {
+        if(dimension != Rori.dimension) {
+            return "dimension mismatch (" + dimension + " in the checkpoint)";
+        }
+        for(int mode = 0; mode < dimension; mode++) {
+            if(cardinalities[mode] != Rori.cardinalities[mode]) {
+                return "cardinality mismatch in mode " + mode;
+            }
+        }
+        if(omega != Rori.bufferUsage + Rori.diskUsage || massOfRori != Rori.mass) {
+            return "the input tensor has changed";
+        }
+        if(this.densityMeasure != densityMeasure || this.policy != policy || this.theta != theta) {
+            return "parameter mismatch (" + this.densityMeasure + ", policy " + this.policy + ", theta " + this.theta + " in the checkpoint)";
+        }
+        if(numOfBlocksDone > blockNum) {
+            return numOfBlocksDone + " blocks were already found";
+        }
+        for(int blockIndex = 0; blockIndex < numOfBlocksDone; blockIndex++) {
+            if(!new File(getFullPath(blockName + blockIndex)).exists()) {
+                return "missing block file " + blockIndex;
+            }
+        }
+        return null;
+    }
+
+    public List<BlockInfo> restoreBlocks() {
+        List<BlockInfo> blocks = new LinkedList<BlockInfo>();
+        for(int blockIndex = 0; blockIndex < numOfBlocksDone; blockIndex++) {
+            blocks.add(new BlockInfo(blockSizes[blockIndex], blockCardinalities[blockIndex], getFullPath(blockName + blockIndex)));
+        }
+        return blocks;
+    }
+
+    /**
+     * remove all the files of the checkpoint
+     */
+    public void clear() {
+        File dir = new File(checkpointPath);
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -60,6 +60,18 @@ public class Geometric implements IDensityMeasure {
         return density(mass, productOfCardinalities);
     }
 
+    /**
+     * the mass of a sub-block is at most |B_n| * maxMasses[n] in every mode n,
+     * thus its density is at most the geometric mean of maxMasses
+     */
+    public double upperBound(int[] maxMasses) {
+        double productOfMaxMasses = 1;
+        for(int dim = 0; dim < dimension; dim++) {
+            productOfMaxMasses *= maxMasses[dim];
+        }
+        return Math.pow(productOfMaxMasses, 1.0/dimension);
+    }
+
     private double density(double mass, double productOfCardinalities) {
         if(productOfCardinalities == 0)
             return - 1;
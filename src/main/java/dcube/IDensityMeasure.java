@@ -62,4 +62,11 @@ public interface IDensityMeasure {
      * @return
      */
     double density(long mass, int[] cardinalities);
+
+    /**
+     * return an upper bound on the density of any block contained in the current block
+     * @param maxMasses n -> maximum mass of the alive attribute values in the nth mode
+     * @return
+     */
+    double upperBound(int[] maxMasses);
 }
@@ -0,0 +1,81 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package dcube;
+
+/**
+ * Inverted index of the tuples in the buffer of a tensor on the attribute values in one mode, stored in the CSR format
+ * The tuples with the ith attribute value are tupleIndices[offsets[i]] ... tupleIndices[offsets[i+1]-1]
+ * @author kijungs
+ */
+public class InvertedIndex {
+
+    public final int mode; // mode whose attribute values are indexed
+    public final int[] offsets; // i -> position of the first tuple with the ith attribute value in tupleIndices
+    public final int[] tupleIndices; // positions of the tuples in the buffer, grouped by attribute values
+
+    private InvertedIndex(int mode, int[] offsets, int[] tupleIndices) {
+        this.mode = mode;
+        this.offsets = offsets;
+        this.tupleIndices = tupleIndices;
+    }
+
+    /**
+     * @param attVals i -> whether the ith attribute value is selected
+     * @return number of the tuples with the selected attribute values
+     */
+    public long numOfTuples(boolean[] attVals) {
+        long numOfTuples = 0;
+        for(int attVal = 0; attVal < attVals.length; attVal++) {
+            if(attVals[attVal]) {
+                numOfTuples += offsets[attVal + 1] - offsets[attVal];
+            }
+        }
+        return numOfTuples;
+    }
+
+    /**
+     * check whether the index of the given tensor fits in memory
+     */
+    public static boolean properMemoryUsage(Tensor tensor, int mode) {
+        long memoryToUse = Runtime.getRuntime().maxMemory() * 7 / 10;
+        long memoryUsed = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        long memoryLeft = memoryToUse - memoryUsed;
+        return memoryLeft > Integer.BYTES * ((long) tensor.bufferUsage + tensor.cardinalities[mode] + 1);
+    }
+
+    /**
+     * index the tuples in the buffer of the given tensor on the given mode, by counting sort
+     */
+    public static InvertedIndex build(Tensor tensor, int mode) {
+        final int cardinality = tensor.cardinalities[mode];
+        final int[] modeAttributes = tensor.attributes[mode];
+        final int bufferUsage = tensor.bufferUsage;
+        int[] offsets = new int[cardinality + 1];
+        for(int i = 0; i < bufferUsage; i++) {
+            offsets[modeAttributes[i] + 1]++;
+        }
+        for(int attVal = 0; attVal < cardinality; attVal++) {
+            offsets[attVal + 1] += offsets[attVal];
+        }
+        int[] positions = new int[cardinality];
+        System.arraycopy(offsets, 0, positions, 0, cardinality);
+        int[] tupleIndices = new int[bufferUsage];
+        for(int i = 0; i < bufferUsage; i++) {
+            tupleIndices[positions[modeAttributes[i]]++] = i;
+        }
+        return new InvertedIndex(mode, offsets, tupleIndices);
+    }
+}
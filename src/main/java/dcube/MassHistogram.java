@@ -0,0 +1,159 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package dcube;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of the masses of the alive attribute values in one mode, used to count the attribute values whose masses are at most a threshold
+ * Masses below EXACT_BUCKETS have their own buckets, and the larger masses are bucketed by their highest bits,
+ * thus only the bucket containing the threshold is scanned
+ * The histogram shares the mass array with the caller, which should call decreased(...) after each decrease
+ * @author kijungs
+ */
+public class MassHistogram {
+
+    public final static int EXACT_BUCKETS = 64; // masses below this number have their own buckets
+    private final static int LOG_OF_EXACT_BUCKETS = 6;
+    private final static int NUM_OF_BUCKETS = EXACT_BUCKETS + 31 - LOG_OF_EXACT_BUCKETS;
+
+    private final int[] attValToMass; // i -> mass of ith attribute value
+    private final int[] attValToBucket; // i -> bucket of ith attribute value, -1 if it is removed
+    private final int[] attValToPosition; // i -> position of ith attribute value in its bucket
+    private final int[][] bucketToAttVals; // (b, j) -> jth attribute value in the bth bucket
+    private final int[] bucketToSize; // b -> number of attribute values in the bth bucket
+    private final long[] bucketToMass; // b -> sum of the masses in the bth bucket
+
+    /**
+     * @param attValToMass i -> mass of ith attribute value
+     * @param attVals alive attribute values are attVals[from] ... attVals[to-1]
+     */
+    public MassHistogram(int[] attValToMass, int[] attVals, int from, int to) {
+        this.attValToMass = attValToMass;
+        attValToBucket = new int[attValToMass.length];
+        Arrays.fill(attValToBucket, -1);
+        attValToPosition = new int[attValToMass.length];
+        bucketToSize = new int[NUM_OF_BUCKETS];
+        bucketToMass = new long[NUM_OF_BUCKETS];
+
+        for(int j = from; j < to; j++) {
+            bucketToSize[bucketOf(attValToMass[attVals[j]])]++;
+        }
+        bucketToAttVals = new int[NUM_OF_BUCKETS][];
+        for(int bucket = 0; bucket < NUM_OF_BUCKETS; bucket++) {
+            bucketToAttVals[bucket] = new int[Math.max(bucketToSize[bucket], 4)];
+            bucketToSize[bucket] = 0;
+        }
+        for(int j = from; j < to; j++) {
+            int attVal = attVals[j];
+            add(attVal, bucketOf(attValToMass[attVal]));
+        }
+    }
+
+    private static int bucketOf(int mass) {
+        if(mass < EXACT_BUCKETS) {
+            return mass;
+        }
+        return EXACT_BUCKETS + (31 - Integer.numberOfLeadingZeros(mass)) - LOG_OF_EXACT_BUCKETS;
+    }
+
+    private void add(int attVal, int bucket) {
+        int[] attVals = bucketToAttVals[bucket];
+        int size = bucketToSize[bucket];
+        if(size == attVals.length) {
+            attVals = Arrays.copyOf(attVals, size * 2);
+            bucketToAttVals[bucket] = attVals;
+        }
+        attVals[size] = attVal;
+        attValToPosition[attVal] = size;
+        attValToBucket[attVal] = bucket;
+        bucketToSize[bucket] = size + 1;
+        bucketToMass[bucket] += attValToMass[attVal];
+    }
+
+    /**
+     * remove the given attribute value from its bucket, whose mass in the bucket is the given one
+     */
+    private void removeFromBucket(int attVal, int mass) {
+        int bucket = attValToBucket[attVal];
+        int[] attVals = bucketToAttVals[bucket];
+        int last = --bucketToSize[bucket];
+        int position = attValToPosition[attVal];
+        attVals[position] = attVals[last];
+        attValToPosition[attVals[position]] = position;
+        bucketToMass[bucket] -= mass;
+        attValToBucket[attVal] = -1;
+    }
+
+    /**
+     * remove the given attribute value, whose mass is no longer changed by decreased(...)
+     */
+    public void remove(int attVal) {
+        if(attValToBucket[attVal] >= 0) {
+            removeFromBucket(attVal, attValToMass[attVal]);
+        }
+    }
+
+    /**
+     * update the histogram after the mass of the given attribute value was decreased by the given amount
+     */
+    public void decreased(int attVal, int decrease) {
+        int bucket = attValToBucket[attVal];
+        if(bucket < 0) { //removed
+            return;
+        }
+        int mass = attValToMass[attVal];
+        int newBucket = bucketOf(mass);
+        if(newBucket == bucket) {
+            bucketToMass[bucket] -= decrease;
+        }
+        else {
+            removeFromBucket(attVal, mass + decrease);
+            add(attVal, newBucket);
+        }
+    }
+
+    /**
+     * @return (number, sum of the masses) of the alive attribute values whose masses are at most the given threshold
+     */
+    public Pair<Integer, Long> atMost(double threshold) {
+        int count = 0;
+        long sum = 0;
+        if(threshold < 0) {
+            return new Pair<Integer, Long>(count, sum);
+        }
+        int lastBucket = threshold >= Integer.MAX_VALUE ? NUM_OF_BUCKETS - 1 : bucketOf((int) threshold);
+        for(int bucket = 0; bucket < lastBucket; bucket++) {
+            count += bucketToSize[bucket];
+            sum += bucketToMass[bucket];
+        }
+        if(lastBucket < EXACT_BUCKETS) {
+            count += bucketToSize[lastBucket];
+            sum += bucketToMass[lastBucket];
+        }
+        else { //only the bucket containing the threshold is scanned
+            int[] attVals = bucketToAttVals[lastBucket];
+            for(int j = 0; j < bucketToSize[lastBucket]; j++) {
+                int mass = attValToMass[attVals[j]];
+                if(mass <= threshold) {
+                    count++;
+                    sum += mass;
+                }
+            }
+        }
+        return new Pair<Integer, Long>(count, sum);
+    }
+}
@@ -18,6 +18,7 @@ package dcube;
 import java.io.*;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 /**
@@ -33,6 +34,7 @@ public class Proposed {
      * @throws IOException
      */
     public static void main(String[] args) throws IOException {
+        final long launchTime = System.currentTimeMillis();
         if (args.length < 5) {
             printError();
             System.exit(-1);
@@ -90,6 +92,75 @@ public class Proposed {
         final int blockNum = Integer.valueOf(args[6]);
         System.out.println("num_of_blocks: " + blockNum);
 
+        boolean checkpoint = false;
+        boolean resume = false;
+        boolean prune = false;
+        double deadline = 0;
+        double maxTheta = 0;
+        boolean multiMode = false;
+        boolean compact = false;
+        boolean histogram = false;
+        double sampleRate = 1;
+        double timeBudget = 0;
+        for(int i = 7; i < args.length; i++) {
+            if(args[i].compareToIgnoreCase("--checkpoint") == 0) {
+                checkpoint = true;
+            } else if(args[i].compareToIgnoreCase("--resume") == 0) {
+                resume = true;
+            } else if(args[i].compareToIgnoreCase("--prune") == 0) {
+                prune = true;
+            } else if(args[i].compareToIgnoreCase("--deadline") == 0 && i + 1 < args.length) {
+                deadline = Double.valueOf(args[++i]);
+            } else if(args[i].compareToIgnoreCase("--adaptive") == 0 && i + 1 < args.length) {
+                maxTheta = Double.valueOf(args[++i]);
+            } else if(args[i].compareToIgnoreCase("--multi-mode") == 0) {
+                multiMode = true;
+            } else if(args[i].compareToIgnoreCase("--compact") == 0) {
+                compact = true;
+            } else if(args[i].compareToIgnoreCase("--histogram") == 0) {
+                histogram = true;
+            } else if(args[i].compareToIgnoreCase("--sample") == 0 && i + 1 < args.length) {
+                sampleRate = Double.valueOf(args[++i]);
+            } else if(args[i].compareToIgnoreCase("--budget") == 0 && i + 1 < args.length) {
+                timeBudget = Double.valueOf(args[++i]);
+            } else {
+                System.err.println("Unknown Option: " + args[i]);
+                printError();
+                System.exit(-1);
+            }
+        }
+        System.out.println("checkpoint: " + (checkpoint || resume));
+        System.out.println("resume: " + resume);
+        System.out.println("prune: " + prune);
+        System.out.println("deadline (seconds): " + deadline);
+        System.out.println("adaptive_max_threshold: " + maxTheta);
+        System.out.println("multi_mode: " + multiMode);
+        System.out.println("compact: " + compact);
+        System.out.println("histogram: " + histogram);
+        if(maxTheta > 0 && maxTheta < theta) {
+            System.err.println("Max_mass_threshold should be greater than or equal to mass_threshold");
+            printError();
+            System.exit(-1);
+        }
+        System.out.println("sample_rate: " + sampleRate);
+        System.out.println("time_budget (seconds): " + timeBudget);
+        if(sampleRate <= 0 || sampleRate > 1) {
+            System.err.println("Sample_rate should be in (0, 1]");
+            printError();
+            System.exit(-1);
+        }
+        boolean sampling = sampleRate < 1 || timeBudget > 0;
+        if(sampling && (checkpoint || resume)) {
+            System.err.println("--checkpoint and --resume cannot be used with --sample or --budget");
+            printError();
+            System.exit(-1);
+        }
+        if(sampling && deadline > 0) {
+            System.err.println("--deadline cannot be used with --sample or --budget");
+            printError();
+            System.exit(-1);
+        }
+
         System.out.println();
         System.out.println("computing proper buffer size");
         Pair<Long, int[]> info = probe(dimension, input, ",");
@@ -104,15 +175,39 @@ public class Proposed {
         System.out.println();
         System.out.println("running the algorithm...");
         Proposed proposed = new Proposed(tensor, output);
+        proposed.setCheckpoint(checkpoint || resume);
+        proposed.setPrune(prune);
+        proposed.setAdaptiveTheta(maxTheta);
+        proposed.setMultiMode(multiMode);
+        proposed.setCompact(compact);
+        proposed.setHistogram(histogram);
+        if(deadline > 0) {
+            proposed.setDeadline(launchTime + (long) (deadline * 1000));
+        }
         System.out.println();
-        proposed.run(blockNum, densityMeasure, policy, theta);
+        if(sampling) {
+            proposed.runSampled(blockNum, densityMeasure, policy, theta, sampleRate, timeBudget);
+        }
+        else {
+            proposed.run(blockNum, densityMeasure, policy, theta, resume);
+        }
     }
 
     private static void printError() {
-        System.err.println("Usage: run_single.sh input_path output_path dimension density_measure policy mass_threshold num_of_blocks");
+        System.err.println("Usage: run_single.sh input_path output_path dimension density_measure policy mass_threshold num_of_blocks [--checkpoint] [--resume] [--prune] [--deadline time_in_seconds] [--adaptive max_mass_threshold] [--multi-mode] [--compact] [--histogram] [--sample sample_rate] [--budget time_budget_in_seconds]");
         System.err.println("Density_measure should be one of [ari, geo, susp]");
         System.err.println("Policy should be one of [density, cardinality]");
         System.err.println("Mass_threshold should be a number greater than or equal to one");
+        System.err.println("--checkpoint saves the blocks found so far in output_path after each block");
+        System.err.println("--resume continues the run from the checkpoint in output_path, and keeps saving the checkpoint");
+        System.err.println("--prune stops peeling once the remaining block cannot get denser than the best one (ari and geo only)");
+        System.err.println("--deadline stops the run at the given number of seconds after the start, and the best block found so far is returned as a partial block");
+        System.err.println("--adaptive starts each block with max_mass_threshold, which is decreased towards mass_threshold once a pass with it would result in a lower density than with mass_threshold");
+        System.err.println("--multi-mode removes attribute values from every mode in each pass over the tensor, instead of from the mode chosen by the policy");
+        System.err.println("--compact peels each block after the first only over the attribute values with remaining tuples, which are renumbered densely");
+        System.err.println("--histogram selects the mode by the histograms of attribute-value masses, instead of scanning all the attribute values (density policy only)");
+        System.err.println("--sample finds blocks in a sample of the tuples with the given rate, and the blocks are evaluated exactly");
+        System.err.println("--budget chooses the sample rate by a pilot run so that the blocks are found within the given time");
     }
 
 
@@ -123,6 +218,19 @@ public class Proposed {
     public final static String blockValueName = "disk_value_block";
     public final static String tempAttName = "disk_att_temp";
     public final static String tempValueName = "disk_value_temp";
+    public final static String checkpointName = "checkpoint";
+    public final static String sampleName = "sample";
+    public final static String pilotName = "pilot";
+    public final static String partialBlocksName = "partial_blocks";
+
+    //the mass threshold of the adaptive schedule is set to the given one once their ratio is below this number
+    private final static double ADAPTIVE_MIN_RATIO = 1.05;
+
+    //a block is removed using the inverted index only if it visits less than 1/INDEX_MAX_RATIO of the tuples, since R is scanned faster
+    private final static int INDEX_MAX_RATIO = 4;
+
+    //number of tuples in the sample used to measure the running time when the sample rate is chosen for a time budget
+    private final static int PILOT_SIZE = 100000;
 
     private String outputPath = "";
 
@@ -130,7 +238,28 @@ public class Proposed {
     private Tensor R;
     private Tensor B;
 
-    private int[][] attValMasses;
+    private int[][] attValMasses; // attribute-value masses of R, which are not modified while a block is peeled
+    private InvertedIndex invertedIndex = null; // index of the tuples of R, used to remove a block without scanning R
+
+    private boolean checkpoint = false; // save the blocks found so far after each block
+    private boolean prune = false; // stop peeling once no further block can be denser than the best one so far
+    private long deadline = Long.MAX_VALUE; // time in milliseconds when peeling stops
+    private boolean stoppedByDeadline = false; // true if the peeling of the last block was stopped by the deadline
+    private double maxTheta = 0; // initial mass threshold of the adaptive schedule, 0 for the fixed schedule
+    private boolean multiMode = false; // remove attribute values from every mode in each pass
+    private boolean compact = false; // renumber the attribute values with remaining tuples after each block
+    private int[][] idToAttVal = null; // (n, j) -> attribute value in the nth mode renumbered as j, null if R is not compacted
+    private int[][] attValToId = null; // (n, i) -> new number of ith attribute value in the nth mode, -1 if it has no remaining tuple
+    private int[] compactCardinalities = null; // n -> number of attribute values with remaining tuples in the nth mode
+    private boolean histogram = false; // select the mode by histograms of attribute-value masses
+    private MassHistogram[] massHistograms = null; // n -> histogram of the masses in the nth mode while a block is peeled, null if not used
+    private AttValMassTracker massTracker = null; // tracker of the changes of the masses given to removeAndUpdateAttValMasses(...), null if not used
+    private long selectionTimeOfLastBlock = 0; // time in nanoseconds spent to select the modes for the last block
+    private int[] cardinalitiesOfWholeTensor = null; // cardinalities of the tensor against which suspiciousness is measured, null if it is R
+    private long massOfWholeTensor = 0; // mass of the tensor against which suspiciousness is measured
+    private long blockBufferSize = -1; // maximum number of tuples of B kept in memory, -1 to size the buffer by the free memory
+    private int passesOfLastBlock = 0; // number of passes over B to find the last block
+    private double maxThetaOfLastBlock = 0; // largest mass threshold used to find the last block, which determines the accuracy guarantee
 
     protected enum TensorType{
         OriginalR, CurrentR
@@ -145,6 +274,79 @@ public class Proposed {
         this.outputPath = outputPath;
     }
 
+    /**
+     * @param checkpoint if true, the blocks found so far are saved after each block, so that the run can be resumed
+     */
+    public void setCheckpoint(boolean checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public void setPrune(boolean prune) {
+        this.prune = prune;
+    }
+
+    /**
+     * @param maxTheta mass threshold used at the start of each block, which is decreased to the given mass threshold as the density gain per pass flattens (0 to disable)
+     */
+    public void setAdaptiveTheta(double maxTheta) {
+        this.maxTheta = maxTheta;
+    }
+
+    /**
+     * @param multiMode if true, each pass removes the attribute values below the threshold of every mode, and the policy is not used
+     */
+    public void setMultiMode(boolean multiMode) {
+        this.multiMode = multiMode;
+    }
+
+    /**
+     * @param compact if true, the attribute values without remaining tuples are dropped after each block,
+     *                and the others are renumbered densely while the next block is peeled
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * @param histogram if true, the mode is selected by querying histograms of attribute-value masses,
+     *                  which are updated as tuples are removed, instead of scanning all the alive attribute values
+     *                  (only used with the density policy in the single-mode removal)
+     */
+    public void setHistogram(boolean histogram) {
+        this.histogram = histogram;
+    }
+
+    /**
+     * @param deadline time in milliseconds (as System.currentTimeMillis()) when the run stops with the blocks found so far
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * record the changes of the attribute-value masses made by the single-mode removeAndUpdateAttValMasses(...) in the given tracker
+     * @param massTracker tracker sharing the mass array given to removeAndUpdateAttValMasses(...), null to stop tracking
+     */
+    protected void setMassTracker(AttValMassTracker massTracker) {
+        this.massTracker = massTracker;
+    }
+
+    /**
+     * measure suspiciousness against the given tensor instead of R, which is used if the input tensor is a part of the given one
+     */
+    protected void setWholeTensor(int[] cardinalities, long mass) {
+        this.cardinalitiesOfWholeTensor = cardinalities;
+        this.massOfWholeTensor = mass;
+    }
+
+    /**
+     * keep at most the given number of tuples of B in memory, instead of sizing the buffer by the free memory
+     * used if blocks are searched in several tensors at the same time, which then do not probe the heap or call System.gc()
+     */
+    protected void setBlockBufferSize(long blockBufferSize) {
+        this.blockBufferSize = blockBufferSize;
+    }
+
     private static String getFullPath(String outputPath, String fileName) {
         return outputPath + File.separator + fileName;
     }
@@ -244,7 +446,7 @@ public class Proposed {
      * get the mass of the given relation
      * @return
      */
-    private long getMass(TensorType type) {
+    protected long getMass(TensorType type) {
         if(type == TensorType.OriginalR) {
             return Rori.mass;
         }
@@ -253,14 +455,174 @@ public class Proposed {
         }
     }
 
+    /**
+     * get the given relation
+     */
+    protected Tensor getTensor(TensorType type) {
+        if(type == TensorType.OriginalR) {
+            return Rori;
+        }
+        else {
+            return R;
+        }
+    }
+
     /**
      * get the attribute-value mass
      * @return
      */
-    private int[][] getAttValMasses() {
+    protected int[][] getAttValMasses() {
         return attValMasses;
     }
 
+    /**
+     * copy the attribute-value masses of R, which can be modified while a block is peeled
+     * @return (n, i) -> mass of ith attribute value in the nth mode
+     */
+    protected int[][] copyAttValMasses() {
+        int[][] copy = new int[attValMasses.length][];
+        for(int mode = 0; mode < attValMasses.length; mode++) {
+            if(idToAttVal == null) {
+                copy[mode] = attValMasses[mode].clone();
+                continue;
+            }
+            //indexed by the new numbers of the attribute values
+            int[] modeIdToAttVal = idToAttVal[mode];
+            copy[mode] = new int[modeIdToAttVal.length];
+            for(int id = 0; id < modeIdToAttVal.length; id++) {
+                copy[mode][id] = attValMasses[mode][modeIdToAttVal[id]];
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * renumber the attribute values of R with positive masses densely, which are the only ones peeled for the next block
+     */
+    private void compactAttVals() {
+        final int dimension = getDimension();
+        final int[] cardinalities = getCardinalities();
+        idToAttVal = new int[dimension][];
+        attValToId = new int[dimension][];
+        compactCardinalities = new int[dimension];
+        for(int mode = 0; mode < dimension; mode++) {
+            final int[] modeAttValMasses = attValMasses[mode];
+            final int[] modeAttValToId = new int[cardinalities[mode]];
+            int numOfIds = 0;
+            for(int attVal = 0; attVal < cardinalities[mode]; attVal++) {
+                modeAttValToId[attVal] = modeAttValMasses[attVal] > 0 ? numOfIds++ : -1;
+            }
+            final int[] modeIdToAttVal = new int[numOfIds];
+            for(int attVal = 0; attVal < cardinalities[mode]; attVal++) {
+                if(modeAttValToId[attVal] >= 0) {
+                    modeIdToAttVal[modeAttValToId[attVal]] = attVal;
+                }
+            }
+            attValToId[mode] = modeAttValToId;
+            idToAttVal[mode] = modeIdToAttVal;
+            compactCardinalities[mode] = numOfIds;
+        }
+        System.out.print("Alive attribute values: ");
+        for(int mode = 0; mode < dimension; mode++) {
+            System.out.print(compactCardinalities[mode]);
+            if(mode < dimension - 1) {
+                System.out.print(" X ");
+            }
+        }
+        System.out.println();
+    }
+
+    /**
+     * copy the remaining tuples of R into B, with their attribute values renumbered
+     */
+    private void copyCompactedTensor() throws IOException {
+
+        final int dimension = R.dimension;
+        final int[][] attributes = B.attributes;
+        final int[] values = B.measureValues;
+        final int bufferSize = B.bufferSize;
+        final int[][] curTensorAttributes = R.attributes;
+        final int[] curTensorValues = R.measureValues;
+        final int curTensorBufferUsage = R.bufferUsage;
+
+        ObjectOutputStream outAtt = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(getFullPath(blockAttName)), 8388608));
+        ObjectOutputStream outValue = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(getFullPath(blockValueName)), 8388608));
+        long newDiskUsage = 0;
+        int bufferIndex = 0;
+
+        int[] tupleAttValues = new int[dimension];
+        for (int i = 0; i < curTensorBufferUsage; i++) {
+            int value = curTensorValues[i];
+            if (value == 0) { //already removed entry
+                continue;
+            }
+            for (int mode = 0; mode < dimension; mode++) {
+                tupleAttValues[mode] = attValToId[mode][curTensorAttributes[mode][i]];
+            }
+            if (bufferIndex < bufferSize) {
+                for (int mode = 0; mode < dimension; mode++) {
+                    attributes[mode][bufferIndex] = tupleAttValues[mode];
+                }
+                values[bufferIndex] = value;
+                bufferIndex++;
+            } else {
+                newDiskUsage++;
+                outValue.writeInt(value);
+                for (int mode = 0; mode < dimension; mode++) {
+                    outAtt.writeInt(tupleAttValues[mode]);
+                }
+            }
+        }
+
+        if(R.diskUsage > 0) {
+
+            ObjectInputStream inAtt = new ObjectInputStream(new BufferedInputStream(new FileInputStream(R.attFilePath), 8388608));
+            ObjectInputStream inValue = new ObjectInputStream(new BufferedInputStream(new FileInputStream(R.valueFilePath), 8388608));
+
+            while (true) {
+                int value = inValue.readInt();
+                if (value == -1) {
+                    break;
+                } else if (value == 0) { //already removed entry
+                    for (int mode = 0; mode < dimension; mode++) {
+                        inAtt.readInt();
+                    }
+                    continue;
+                }
+
+                for (int mode = 0; mode < dimension; mode++) {
+                    tupleAttValues[mode] = attValToId[mode][inAtt.readInt()];
+                }
+                if (bufferIndex < bufferSize) {
+                    for (int mode = 0; mode < dimension; mode++) {
+                        attributes[mode][bufferIndex] = tupleAttValues[mode];
+                    }
+                    values[bufferIndex] = value;
+                    bufferIndex++;
+                } else {
+                    newDiskUsage++;
+                    outValue.writeInt(value);
+                    for (int mode = 0; mode < dimension; mode++) {
+                        outAtt.writeInt(tupleAttValues[mode]);
+                    }
+                }
+            }
+            inAtt.close();
+            inValue.close();
+        }
+        outValue.writeInt(-1);
+        outAtt.close();
+        outValue.close();
+
+        B.bufferUsage = bufferIndex;
+        B.diskUsage = newDiskUsage;
+
+        if(newDiskUsage == 0) {
+            new File(getFullPath(blockAttName)).delete();
+            new File(getFullPath(blockValueName)).delete();
+        }
+    }
+
     private int getDimension() {
         return Rori.dimension;
     }
@@ -272,16 +634,17 @@ public class Proposed {
     /**
      * copy the original tensor
      */
-    private void copyOriTesnor() throws IOException {
+    protected void copyOriTesnor() throws IOException {
         R = Rori.copy(getFullPath(currentValueName));
     }
 
     /**
      * Copy the current block
      */
-    private void copyBlock(){
+    protected void copyBlock(){
         B = null;
-        int bufferSize = (int)(Math.min(Integer.MAX_VALUE, Math.min(getProperBufferSizeForBlocks(R.dimension), R.bufferUsage + R.diskUsage)));
+        long properBufferSize = blockBufferSize >= 0 ? blockBufferSize : getProperBufferSizeForBlocks(R.dimension);
+        int bufferSize = (int)(Math.min(Integer.MAX_VALUE, Math.min(properBufferSize, R.bufferUsage + R.diskUsage)));
         B = new Tensor(R.dimension, R.cardinalities, R.bufferUsage + R.diskUsage, R.mass, bufferSize, getFullPath(blockAttName), getFullPath(blockValueName));
     }
 
@@ -309,52 +672,12 @@ public class Proposed {
         int[] values = B.measureValues;
         int bufferSize = B.bufferSize;
 
-        for(int mode = 0; mode < dimension; mode++) {
-            if(mode == modeToRemove)
-                continue;
-            int bufferUsage = B.bufferUsage;
-            int[] modeDegree = attMasses[mode];
-            int[] updatedModeAttributes = attributes[mode];
-            for (int bufferIndex = 0; bufferIndex < bufferUsage; bufferIndex++) {
-                if (attToRemove[modeAttributes[bufferIndex]]) {
-                    modeDegree[updatedModeAttributes[bufferIndex]] -= values[bufferIndex];
-                    bufferUsage--;
-                    for(; bufferUsage > bufferIndex; bufferUsage--){
-                        if(!attToRemove[modeAttributes[bufferUsage]]) {
-                            updatedModeAttributes[bufferIndex] = updatedModeAttributes[bufferUsage];
-                            break;
-                        }
-                        else {
-                            modeDegree[updatedModeAttributes[bufferUsage]] -= values[bufferUsage];
-                        }
-                    }
-                }
-            }
-        }
-        int bufferUsage = B.bufferUsage;
-        int[] modeAttMasses = attMasses[modeToRemove];
-        for (int bufferIndex = 0; bufferIndex < bufferUsage; bufferIndex++) {
-            if (attToRemove[modeAttributes[bufferIndex]]) {
-                modeAttMasses[modeAttributes[bufferIndex]] = 0;  // set to 0;
-                bufferUsage--;
-                for(; bufferUsage > bufferIndex; bufferUsage--){
-                    if(!attToRemove[modeAttributes[bufferUsage]]) {
-                        modeAttributes[bufferIndex] = modeAttributes[bufferUsage];
-                        values[bufferIndex] = values[bufferUsage];
-                        break;
-                    }
-                    else {
-                        modeAttMasses[modeAttributes[bufferUsage]] = 0;
-                    }
-                }
-            }
-        }
-        B.bufferUsage = bufferUsage;
-        int bufferIndex = bufferUsage;
+        TensorMethods.removeFromBuffer(B, modeToRemove, attToRemove, attMasses, massHistograms, massTracker);
+        int bufferIndex = B.bufferUsage;
+        int[] modeAttMasses;
 
 
         if(B.diskUsage == 0) {
-            B.bufferUsage = bufferIndex;
             return;
         }
 
@@ -369,10 +692,17 @@ public class Proposed {
                 int tempBufferIndex = bufferIndex;
                 int[] updatedModeIndices = attributes[mode];
                 modeAttMasses = attMasses[mode];
+                MassHistogram histogram = massHistograms == null ? null : massHistograms[mode];
                 int[] curTensorUpdatedModeIndices = R.attributes[mode];
                 for (int i = 0; i < curTensorBufferUsage; i++) {
                     if(attToRemove[curTensorModeAttributes[i]]) {
                         modeAttMasses[curTensorUpdatedModeIndices[i]] -= curTensorValues[i];
+                        if(histogram != null) {
+                            histogram.decreased(curTensorUpdatedModeIndices[i], curTensorValues[i]);
+                        }
+                        if(massTracker != null) {
+                            massTracker.changed(mode, curTensorUpdatedModeIndices[i]);
+                        }
                     }
                     else {
                         updatedModeIndices[tempBufferIndex++] = curTensorUpdatedModeIndices[i];
@@ -384,6 +714,9 @@ public class Proposed {
             for (int i = 0; i < curTensorBufferUsage; i++) {
                 if(attToRemove[curTensorModeAttributes[i]]) {
                     modeAttMasses[curTensorModeAttributes[i]] -= curTensorValues[i]; // set to 0
+                    if(massTracker != null) {
+                        massTracker.changed(modeToRemove, curTensorModeAttributes[i]);
+                    }
                 }
                 else {
                     modeAttributes[bufferIndex] = curTensorModeAttributes[i];
@@ -423,6 +756,12 @@ public class Proposed {
                 if (attToRemove[tupleAttValues[modeToRemove]]) {
                     for (int mode = 0; mode < dimension; mode++) {
                         attMasses[mode][tupleAttValues[mode]] -= value;
+                        if(massHistograms != null) {
+                            massHistograms[mode].decreased(tupleAttValues[mode], value);
+                        }
+                        if(massTracker != null) {
+                            massTracker.changed(mode, tupleAttValues[mode]);
+                        }
                     }
                 } else {
                     if (bufferIndex < bufferSize) {
@@ -458,100 +797,148 @@ public class Proposed {
 
     }
 
-    protected double removeAndEvaluateBlock(int blockIndex, BlockInfo block, IDensityMeasure measure) throws IOException {
-
-        final int dimension = Rori.dimension;
-        long massB = 0;
-
-        int[] cardinalities = getCardinalities();
-        for(int mode = 0; mode < dimension; mode++) {
-            attValMasses[mode] = new int[cardinalities[mode]];
-        }
-
-        final boolean[][] modeToindicesToRemoveArr = block.getBitMask(dimension, cardinalities);
-        final int[] cardinalitiesOfBlock = block.blockCardinalities;
+    /**
+     * Remove tuples with any of the given attribute values in one pass over B, and update attribute-value masses
+     * Each removed tuple is charged to the attribute value in the first mode of modesToRemove that contains it,
+     * which is the mass removed with the attribute value if the modes are peeled in that order
+     * @param modesToRemove modes from which attribute values are removed, in the order of peeling
+     * @param modeToAttValsToRemove (n, i) -> whether a_{i} in the nth mode should be removed, null if no value is removed from the mode
+     * @param attMasses attribute-value masses
+     * @param modeToAttValToRemovedMass (n, i) -> mass charged to a_{i} in the nth mode, which is filled in for the modes in modesToRemove
+     * @param isFirst true if this is the first removal false otherwise
+     * @throws IOException
+     */
+    protected void removeAndUpdateAttValMasses(int[] modesToRemove, boolean[][] modeToAttValsToRemove, int[][] attMasses, int[][] modeToAttValToRemovedMass, boolean isFirst) throws IOException {
+
+        final int dimension = B.dimension;
+        final int[][] attributes = B.attributes;
+        final int[] values = B.measureValues;
+        final int bufferSize = B.bufferSize;
+        final Tensor inputTensor = isFirst ? R : B;
+        final int[][] inputAttributes = inputTensor.attributes;
+        final int[] inputValues = inputTensor.measureValues;
+        final int inputBufferUsage = inputTensor.bufferUsage;
+
+        ObjectOutputStream outAtt = null; // opened on the first spill
+        ObjectOutputStream outValue = null;
+        long newDiskUsage = 0;
+        int bufferIndex = 0;
 
-        final int[][] attributes = R.attributes;
-        final int[] oriValues = Rori.measureValues;
-        final int[] values = R.measureValues;
-        final int bufferUsage = R.bufferUsage;
-        for(int i = 0; i< bufferUsage; i++) {
-            boolean removed = true;
-            for (int mode = 0; mode < dimension; mode++) {
-                if (!modeToindicesToRemoveArr[mode][attributes[mode][i]]) {
-                    removed = false;
-                    break;
-                }
+        //B is compacted in place since bufferIndex never exceeds i
+        int[] tupleAttValues = new int[dimension];
+        for (int i = 0; i < inputBufferUsage; i++) {
+            int value = inputValues[i];
+            if (value == 0) { //already removed entry
+                continue;
             }
-
-            if(removed) {
-                massB += oriValues[i];
+            for (int mode = 0; mode < dimension; mode++) {
+                tupleAttValues[mode] = inputAttributes[mode][i];
             }
-
-            int value = values[i];
-            if(removed & value > 0) { //not removed yet but to remove
-                R.mass -= value;
-                values[i] = 0; //remove entry
+            if (removeTuple(tupleAttValues, value, modesToRemove, modeToAttValsToRemove, attMasses, modeToAttValToRemovedMass)) {
+                continue;
             }
-        }
-
-        for(int mode=0; mode<dimension; mode++){
-            int[] modeIndices = attributes[mode];
-            int[] modeDegree = attValMasses[mode];
-            for(int i=0; i<bufferUsage; i++){
-                int value = values[i];
-                modeDegree[modeIndices[i]] += value;
+            if (bufferIndex < bufferSize) {
+                for (int mode = 0; mode < dimension; mode++) {
+                    attributes[mode][bufferIndex] = tupleAttValues[mode];
+                }
+                values[bufferIndex] = value;
+                bufferIndex++;
+            } else {
+                if (outValue == null) {
+                    outAtt = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(getFullPath(tempAttName)), 8388608));
+                    outValue = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(getFullPath(tempValueName)), 8388608));
+                }
+                newDiskUsage++;
+                outValue.writeInt(value);
+                for (int mode = 0; mode < dimension; mode++) {
+                    outAtt.writeInt(tupleAttValues[mode]);
+                }
             }
         }
 
-        if(R.diskUsage > 0) {
+        if(inputTensor.diskUsage > 0) {
 
-            ObjectInputStream inAtt = new ObjectInputStream(new BufferedInputStream(new FileInputStream(R.attFilePath), 8388608));
-            ObjectInputStream inOriValue = new ObjectInputStream(new BufferedInputStream(new FileInputStream(Rori.valueFilePath), 8388608));
-            ObjectInputStream inCurValue = new ObjectInputStream(new BufferedInputStream(new FileInputStream(R.valueFilePath), 8388608));
-            ObjectOutputStream outValue = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(getFullPath(tempValueName)), 8388608));
+            ObjectInputStream inAtt = new ObjectInputStream(new BufferedInputStream(new FileInputStream(inputTensor.attFilePath), 8388608));
+            ObjectInputStream inValue = new ObjectInputStream(new BufferedInputStream(new FileInputStream(inputTensor.valueFilePath), 8388608));
 
-            int[] tupleAttValues = new int[dimension];
-            while(true) {
-                int oriValue = inOriValue.readInt();
-                if(oriValue == -1){
-                    outValue.writeInt(-1);
+            while (true) {
+                int value = inValue.readInt();
+                if (value == -1) {
                     break;
-                }
-                boolean removed = true;
-                for(int mode = 0; mode < dimension; mode++) {
-                    tupleAttValues[mode] = inAtt.readInt();
-                    if(!modeToindicesToRemoveArr[mode][tupleAttValues[mode]]) {
-                        removed = false;
+                } else if (value == 0) { //already removed entry
+                    for (int mode = 0; mode < dimension; mode++) {
+                        inAtt.readInt();
                     }
+                    continue;
                 }
 
-                if(removed) {
-                    massB += oriValue;
+                for (int mode = 0; mode < dimension; mode++) {
+                    tupleAttValues[mode] = inAtt.readInt();
                 }
-
-                int value = inCurValue.readInt();
-                if(removed & value > 0) { //not removed yet but to remove
-                    R.mass -= value;
-                    outValue.writeInt(0); //remove entry
+                if (removeTuple(tupleAttValues, value, modesToRemove, modeToAttValsToRemove, attMasses, modeToAttValToRemovedMass)) {
+                    continue;
                 }
-                else if (value > 0){ //to remain
+                if (bufferIndex < bufferSize) {
                     for (int mode = 0; mode < dimension; mode++) {
-                        attValMasses[mode][tupleAttValues[mode]] += value;
+                        attributes[mode][bufferIndex] = tupleAttValues[mode];
                     }
+                    values[bufferIndex] = value;
+                    bufferIndex++;
+                } else {
+                    if (outValue == null) {
+                        outAtt = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(getFullPath(tempAttName)), 8388608));
+                        outValue = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(getFullPath(tempValueName)), 8388608));
+                    }
+                    newDiskUsage++;
                     outValue.writeInt(value);
+                    for (int mode = 0; mode < dimension; mode++) {
+                        outAtt.writeInt(tupleAttValues[mode]);
+                    }
                 }
-                else {
-                    outValue.writeInt(value);
-                }
-
             }
             inAtt.close();
-            inOriValue.close();
-            inCurValue.close();
+            inValue.close();
+        }
+        if(outValue != null) {
+            outValue.writeInt(-1);
+            outAtt.close();
             outValue.close();
         }
 
+        B.bufferUsage = bufferIndex;
+        B.diskUsage = newDiskUsage;
+
+        if(newDiskUsage > 0 ) {
+            new File(getFullPath(blockAttName)).delete();
+            new File(getFullPath(blockValueName)).delete();
+            new File(getFullPath(tempAttName)).renameTo(new File(getFullPath(blockAttName)));
+            new File(getFullPath(tempValueName)).renameTo(new File(getFullPath(blockValueName)));
+        }
+    }
+
+    /**
+     * @return true if the tuple has any attribute value to remove, in which case the attribute-value masses are updated
+     */
+    private static boolean removeTuple(int[] tupleAttValues, int value, int[] modesToRemove, boolean[][] modeToAttValsToRemove, int[][] attMasses, int[][] modeToAttValToRemovedMass) {
+        for (int mode : modesToRemove) {
+            int attVal = tupleAttValues[mode];
+            if (modeToAttValsToRemove[mode][attVal]) {
+                modeToAttValToRemovedMass[mode][attVal] += value;
+                for (int otherMode = 0; otherMode < tupleAttValues.length; otherMode++) {
+                    attMasses[otherMode][tupleAttValues[otherMode]] -= value;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected double removeAndEvaluateBlock(int blockIndex, BlockInfo block, IDensityMeasure measure) throws IOException {
+
+        final int dimension = Rori.dimension;
+        final int[] cardinalitiesOfBlock = block.blockCardinalities;
+        long massB = removeBlock(block.getBitMask(dimension, getCardinalities()));
+
         System.out.println("Block: " + (blockIndex+1));
         System.out.print("Volume: ");
         for(int mode = 0; mode < dimension; mode++) {
@@ -565,17 +952,190 @@ public class Proposed {
         System.out.println("Density: " + density);
         System.out.println("Mass: " + massB);
 
+        return density;
+    }
+
+    /**
+     * Remove the tuples in the given block from R and recompute the attribute-value masses of R
+     * @param modeToindicesToRemoveArr (n, i) -> whether the ith attribute value in the nth mode is in the block
+     * @return mass of the block in the original tensor
+     * @throws IOException
+     */
+    protected long removeBlock(final boolean[][] modeToindicesToRemoveArr) throws IOException {
+
+        if(R.diskUsage == 0) {
+            if(invertedIndex == null) {
+                int modeToIndex = 0; //the mode with the most attribute values has the shortest lists
+                for(int mode = 1; mode < getDimension(); mode++) {
+                    if(getCardinalities()[mode] > getCardinalities()[modeToIndex]) {
+                        modeToIndex = mode;
+                    }
+                }
+                if(InvertedIndex.properMemoryUsage(R, modeToIndex)) {
+                    invertedIndex = InvertedIndex.build(R, modeToIndex);
+                }
+            }
+            if(invertedIndex != null && invertedIndex.numOfTuples(modeToindicesToRemoveArr[invertedIndex.mode]) < R.bufferUsage / INDEX_MAX_RATIO) {
+                return removeBlockByIndex(modeToindicesToRemoveArr);
+            }
+        }
+
+        final int dimension = Rori.dimension;
+        long massB = 0;
+
+        int[] cardinalities = getCardinalities();
+        for(int mode = 0; mode < dimension; mode++) {
+            attValMasses[mode] = new int[cardinalities[mode]];
+        }
+
+        final int[][] attributes = R.attributes;
+        final int[] oriValues = Rori.measureValues;
+        final int[] values = R.measureValues;
+        final int bufferUsage = R.bufferUsage;
+        for(int i = 0; i< bufferUsage; i++) {
+            boolean removed = true;
+            for (int mode = 0; mode < dimension; mode++) {
+                if (!modeToindicesToRemoveArr[mode][attributes[mode][i]]) {
+                    removed = false;
+                    break;
+                }
+            }
+
+            if(removed) {
+                massB += oriValues[i];
+            }
+
+            int value = values[i];
+            if(removed & value > 0) { //not removed yet but to remove
+                R.mass -= value;
+                values[i] = 0; //remove entry
+            }
+        }
+
+        for(int mode=0; mode<dimension; mode++){
+            int[] modeIndices = attributes[mode];
+            int[] modeDegree = attValMasses[mode];
+            for(int i=0; i<bufferUsage; i++){
+                int value = values[i];
+                modeDegree[modeIndices[i]] += value;
+            }
+        }
+
+        if(R.diskUsage > 0) {
+
+            ObjectInputStream inAtt = new ObjectInputStream(new BufferedInputStream(new FileInputStream(R.attFilePath), 8388608));
+            ObjectInputStream inOriValue = new ObjectInputStream(new BufferedInputStream(new FileInputStream(Rori.valueFilePath), 8388608));
+            ObjectInputStream inCurValue = new ObjectInputStream(new BufferedInputStream(new FileInputStream(R.valueFilePath), 8388608));
+            ObjectOutputStream outValue = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(getFullPath(tempValueName)), 8388608));
+
+            int[] tupleAttValues = new int[dimension];
+            while(true) {
+                int oriValue = inOriValue.readInt();
+                if(oriValue == -1){
+                    outValue.writeInt(-1);
+                    break;
+                }
+                boolean removed = true;
+                for(int mode = 0; mode < dimension; mode++) {
+                    tupleAttValues[mode] = inAtt.readInt();
+                    if(!modeToindicesToRemoveArr[mode][tupleAttValues[mode]]) {
+                        removed = false;
+                    }
+                }
+
+                if(removed) {
+                    massB += oriValue;
+                }
+
+                int value = inCurValue.readInt();
+                if(removed & value > 0) { //not removed yet but to remove
+                    R.mass -= value;
+                    outValue.writeInt(0); //remove entry
+                }
+                else if (value > 0){ //to remain
+                    for (int mode = 0; mode < dimension; mode++) {
+                        attValMasses[mode][tupleAttValues[mode]] += value;
+                    }
+                    outValue.writeInt(value);
+                }
+                else {
+                    outValue.writeInt(value);
+                }
+
+            }
+            inAtt.close();
+            inOriValue.close();
+            inCurValue.close();
+            outValue.close();
+        }
+
         new File(R.valueFilePath).delete();
         new File(getFullPath(tempValueName)).renameTo(new File(R.valueFilePath));
 
-        return density;
+        return massB;
+    }
+
+    /**
+     * Remove the tuples in the given block from R, which is in memory, and subtract their masses from the attribute-value masses of R
+     * Only the tuples with the attribute values of the block in the indexed mode are visited
+     * @param modeToindicesToRemoveArr (n, i) -> whether the ith attribute value in the nth mode is in the block
+     * @return mass of the block in the original tensor
+     */
+    private long removeBlockByIndex(final boolean[][] modeToindicesToRemoveArr) {
+
+        final int dimension = Rori.dimension;
+        long massB = 0;
+
+        final int[][] attributes = R.attributes;
+        final int[] oriValues = Rori.measureValues;
+        final int[] values = R.measureValues;
+        final int[] offsets = invertedIndex.offsets;
+        final int[] tupleIndices = invertedIndex.tupleIndices;
+        final boolean[] indexedAttValsToRemove = modeToindicesToRemoveArr[invertedIndex.mode];
+        for(int attVal = 0; attVal < indexedAttValsToRemove.length; attVal++) {
+            if(!indexedAttValsToRemove[attVal]) {
+                continue;
+            }
+            for(int k = offsets[attVal]; k < offsets[attVal + 1]; k++) {
+                int i = tupleIndices[k];
+                boolean removed = true;
+                for (int mode = 0; mode < dimension; mode++) {
+                    if (!modeToindicesToRemoveArr[mode][attributes[mode][i]]) {
+                        removed = false;
+                        break;
+                    }
+                }
+                if(!removed) {
+                    continue;
+                }
+
+                massB += oriValues[i];
+                int value = values[i];
+                if(value > 0) { //not removed yet but to remove
+                    R.mass -= value;
+                    values[i] = 0; //remove entry
+                    for (int mode = 0; mode < dimension; mode++) {
+                        attValMasses[mode][attributes[mode][i]] -= value;
+                    }
+                }
+            }
+        }
+
+        return massB;
     }
 
     public void run(final int blockNum, DensityMeasure densityMeasure, final int policy, final double theta) throws IOException {
+        run(blockNum, densityMeasure, policy, theta, false);
+    }
+
+    /**
+     * find dense blocks, saving a checkpoint after each block if it is enabled by setCheckpoint(...)
+     * @param resume true if the run continues from the checkpoint in the output path
+     */
+    public void run(final int blockNum, DensityMeasure densityMeasure, final int policy, final double theta, final boolean resume) throws IOException {
 
         long start = System.currentTimeMillis();
         copyOriTesnor();
-        initialize();
 
         IDensityMeasure measure = null;
         if(densityMeasure == DensityMeasure.Suspiciousness)
@@ -589,32 +1149,308 @@ public class Proposed {
         }
         measure.initialize(getDimension(), getCardinalities(), getMass(TensorType.OriginalR));
 
-        final List<BlockInfo> listOfBlocks = new LinkedList();
+        Checkpoint checkpoint = new Checkpoint(getFullPath(checkpointName));
+        List<BlockInfo> listOfBlocks = new LinkedList();
         double bestAccuracy = 0;
-        for(int i = 0; i < blockNum; i++) {
+        int firstBlockIndex = 0;
+        if(resume) {
+            if(!checkpoint.exists()) {
+                throw new IOException("No checkpoint was found in " + outputPath);
+            }
+            checkpoint.load();
+            String reason = checkpoint.validate(Rori, densityMeasure, policy, theta, blockNum);
+            if(reason != null) {
+                throw new IOException("Invalid checkpoint: " + reason);
+            }
+            initialize();
+            listOfBlocks = checkpoint.restoreBlocks();
+            for(BlockInfo block : listOfBlocks) {
+                removeBlock(block.getBitMask(getDimension(), getCardinalities()));
+            }
+            if(R.mass != checkpoint.massOfR) {
+                throw new IOException("Invalid checkpoint: the blocks do not restore the remaining tensor");
+            }
+            bestAccuracy = checkpoint.bestAccuracy;
+            firstBlockIndex = checkpoint.numOfBlocksDone;
+            System.out.println("Resuming after block " + firstBlockIndex);
+            if(compact && firstBlockIndex > 0) {
+                compactAttVals();
+            }
+        }
+        else {
+            checkpoint.clear();
+            checkpoint.dimension = getDimension();
+            checkpoint.cardinalities = getCardinalities();
+            checkpoint.omega = Rori.bufferUsage + Rori.diskUsage;
+            checkpoint.massOfRori = getMass(TensorType.OriginalR);
+            checkpoint.densityMeasure = densityMeasure;
+            checkpoint.policy = policy;
+            checkpoint.theta = theta;
+            initialize();
+            if(this.checkpoint) { //saved with no block, thus a run stopped during the first block can also be resumed
+                checkpoint.save(R, listOfBlocks);
+            }
+        }
+
+        List<Integer> partialBlocks = new LinkedList<Integer>();
+        int totalPasses = 0;
+        long totalSelectionTime = 0;
+        double maxThetaUsed = theta;
+        for(int i = firstBlockIndex; i < blockNum; i++) {
             BlockInfo block = findOneBlock(i, densityMeasure, policy, theta);
             bestAccuracy = Math.max(bestAccuracy, removeAndEvaluateBlock(i, block, measure));
+            if(compact) {
+                compactAttVals();
+            }
+            System.out.println("Passes: " + passesOfLastBlock);
+            System.out.println("Max mass threshold: " + maxThetaOfLastBlock);
+            System.out.println("Mode selection time: " + selectionTimeOfLastBlock / 1000000000.0 + " seconds");
+            totalPasses += passesOfLastBlock;
+            totalSelectionTime += selectionTimeOfLastBlock;
+            maxThetaUsed = Math.max(maxThetaUsed, maxThetaOfLastBlock);
             listOfBlocks.add(block);
+            if(stoppedByDeadline) {
+                System.out.println("Partial block: " + (i+1));
+                partialBlocks.add(i+1);
+            }
+            else if(this.checkpoint && partialBlocks.isEmpty()) { //partial blocks are not saved, thus they are peeled again on resume
+                checkpoint.bestAccuracy = bestAccuracy;
+                checkpoint.save(R, listOfBlocks);
+            }
+            if(i < blockNum - 1 && System.currentTimeMillis() > deadline) {
+                System.out.println("Deadline reached, " + (i+1) + " blocks were found");
+                break;
+            }
         }
+        System.out.println("Total passes: " + totalPasses);
+        System.out.println("Max mass threshold: " + maxThetaUsed);
+        System.out.println("Total mode selection time: " + totalSelectionTime / 1000000000.0 + " seconds");
         System.out.println("Running time: " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds");
 
 
         start = System.currentTimeMillis();
         System.out.println("Writing outputs...");
         writeOutput(outputPath, Rori, listOfBlocks);
+        if(!partialBlocks.isEmpty()) {
+            writePartialBlocks(getFullPath(partialBlocksName), partialBlocks);
+        }
+        else { //written by a previous run stopped by the deadline
+            new File(getFullPath(partialBlocksName)).delete();
+        }
         System.out.println("Outputs were written. " + (System.currentTimeMillis() - start + 0.0) / 1000 + " seconds was taken.");
 
         System.out.println("Removing temporary files...");
         remove(blockNum);
+        if(this.checkpoint && (!partialBlocks.isEmpty() || listOfBlocks.size() < blockNum)) { //stopped by the deadline
+            System.out.println("The checkpoint was kept, and --resume finds the remaining blocks");
+        }
+        else {
+            checkpoint.clear();
+        }
         System.out.println("Temporary files were removed.");
 
         return;
     }
 
+    /**
+     * find dense blocks in a Bernoulli sample of the input tensor, then compute the exact masses of the blocks in one pass over the input tensor
+     * the blocks are the same as in the sample with measure values scaled by the inverse of the sample rate, since every density measure is proportional to the masses,
+     * thus the scaling is applied only to the estimated masses and densities, which are reported with the exact ones
+     * @param sampleRate probability that each tuple is sampled
+     * @param timeBudget if positive, the sample rate is chosen by a pilot run so that the blocks are found within this number of seconds
+     */
+    public void runSampled(final int blockNum, DensityMeasure densityMeasure, final int policy, final double theta, double sampleRate, final double timeBudget) throws IOException {
+
+        long start = System.currentTimeMillis();
+        Random random = new Random(0);
+        if(timeBudget > 0) {
+            sampleRate = chooseSampleRate(blockNum, densityMeasure, policy, theta, timeBudget, random);
+        }
+        System.out.println("Sample rate: " + sampleRate);
+        if(sampleRate >= 1) {
+            run(blockNum, densityMeasure, policy, theta);
+            return;
+        }
+
+        Proposed sampled = createSample(sampleRate, random, getFullPath(sampleName));
+        System.out.println("Sampled tuples: " + (sampled.Rori.bufferUsage + sampled.Rori.diskUsage));
+        IDensityMeasure sampleMeasure = createMeasure(densityMeasure);
+        sampleMeasure.initialize(getDimension(), getCardinalities(), sampled.getMass(TensorType.OriginalR));
+
+        sampled.copyOriTesnor();
+        sampled.initialize();
+        List<BlockInfo> listOfBlocks = new LinkedList<BlockInfo>();
+        long[] sampleMasses = new long[blockNum];
+        for(int i = 0; i < blockNum; i++) {
+            BlockInfo block = sampled.findOneBlock(i, densityMeasure, policy, theta);
+            sampleMasses[i] = sampled.removeBlock(block.getBitMask(getDimension(), getCardinalities()));
+            listOfBlocks.add(block);
+        }
+        System.out.println("Sampling time: " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds");
+
+        IDensityMeasure measure = createMeasure(densityMeasure);
+        measure.initialize(getDimension(), getCardinalities(), getMass(TensorType.OriginalR));
+        long[] exactMasses = massesOfBlocks(listOfBlocks);
+        for(int i = 0; i < blockNum; i++) {
+            int[] cardinalitiesOfBlock = listOfBlocks.get(i).blockCardinalities;
+            System.out.println("Block: " + (i+1));
+            System.out.print("Volume: ");
+            for(int mode = 0; mode < getDimension(); mode++) {
+                System.out.print(cardinalitiesOfBlock[mode]);
+                if(mode < getDimension() - 1) {
+                    System.out.print(" X ");
+                }
+            }
+            System.out.println();
+            System.out.println("Density: " + measure.density(exactMasses[i], cardinalitiesOfBlock));
+            System.out.println("Mass: " + exactMasses[i]);
+            double estimatedDensity = sampleMeasure.density(sampleMasses[i], cardinalitiesOfBlock);
+            System.out.println("Estimated density: " + (estimatedDensity > 0 ? estimatedDensity / sampleRate : estimatedDensity));
+            System.out.println("Estimated mass: " + sampleMasses[i] / sampleRate);
+        }
+        System.out.println("Running time: " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds");
+
+        start = System.currentTimeMillis();
+        System.out.println("Writing outputs...");
+        writeOutput(outputPath, Rori, listOfBlocks);
+        System.out.println("Outputs were written. " + (System.currentTimeMillis() - start + 0.0) / 1000 + " seconds was taken.");
+
+        System.out.println("Removing temporary files...");
+        sampled.clear();
+        remove(blockNum);
+        System.out.println("Temporary files were removed.");
+    }
+
+    /**
+     * measure the time taken to find a block in a sample of PILOT_SIZE tuples,
+     * and choose the sample rate so that blockNum blocks are found within the remaining time, assuming linear scaling
+     */
+    private double chooseSampleRate(final int blockNum, DensityMeasure densityMeasure, final int policy, final double theta, final double timeBudget, Random random) throws IOException {
+        long start = System.currentTimeMillis();
+        long omega = Rori.bufferUsage + Rori.diskUsage;
+        double pilotRate = Math.min(1.0, PILOT_SIZE / (omega + 1.0));
+        if(pilotRate >= 1) { //the input tensor is small enough
+            return 1;
+        }
+
+        Proposed pilot = createSample(pilotRate, random, getFullPath(pilotName));
+        pilot.copyOriTesnor();
+        pilot.initialize();
+        pilot.findOneBlock(0, densityMeasure, policy, theta);
+        pilot.clear();
+
+        double pilotTime = (System.currentTimeMillis() - start + 0.0) / 1000;
+        double timeLeft = timeBudget - pilotTime;
+        System.out.println("Pilot time: " + pilotTime + " seconds (sample rate: " + pilotRate + ")");
+        if(timeLeft <= 0) {
+            return pilotRate;
+        }
+        return Math.min(1.0, Math.max(pilotRate, pilotRate * timeLeft / (pilotTime * blockNum)));
+    }
+
+    /**
+     * create a runner on a sample of the input tensor, whose files are written in the given folder
+     */
+    private Proposed createSample(double sampleRate, Random random, String samplePath) throws IOException {
+        new File(samplePath).mkdir();
+        int dimension = getDimension();
+        long expectedSize = (long) ((Rori.bufferUsage + Rori.diskUsage) * sampleRate * 1.1) + 1000;
+        int bufferSize = getProperBufferSizeForInputTensor(dimension, expectedSize, getCardinalities());
+        Tensor sample = TensorMethods.sampleTensor(Rori, sampleRate, random, bufferSize, getFullPath(samplePath, originalAttName), getFullPath(samplePath, originalValueName));
+        Proposed sampled = new Proposed(sample, samplePath);
+        sampled.setPrune(prune);
+        sampled.setAdaptiveTheta(maxTheta);
+        sampled.setMultiMode(multiMode);
+        sampled.setCompact(compact);
+        sampled.setHistogram(histogram);
+        return sampled;
+    }
+
+    /**
+     * compute the masses of the given blocks in one pass over the input tensor
+     */
+    private long[] massesOfBlocks(List<BlockInfo> blocks) throws IOException {
+        final int dimension = getDimension();
+        final int blockNum = blocks.size();
+        final boolean[][][] masks = new boolean[blockNum][][];
+        for(int i = 0; i < blockNum; i++) {
+            masks[i] = blocks.get(i).getBitMask(dimension, getCardinalities());
+        }
+        final long[] masses = new long[blockNum];
+        final int[] tupleAttValues = new int[dimension];
+        ObjectInputStream inAtt = null;
+        ObjectInputStream inValue = null;
+        if(Rori.diskUsage > 0) {
+            inAtt = new ObjectInputStream(new BufferedInputStream(new FileInputStream(Rori.attFilePath), 8388608));
+            inValue = new ObjectInputStream(new BufferedInputStream(new FileInputStream(Rori.valueFilePath), 8388608));
+        }
+        for(long index = 0; ; index++) {
+            int value;
+            if(index < Rori.bufferUsage) {
+                value = Rori.measureValues[(int)index];
+                for(int mode = 0; mode < dimension; mode++) {
+                    tupleAttValues[mode] = Rori.attributes[mode][(int)index];
+                }
+            }
+            else if(inValue != null) {
+                value = inValue.readInt();
+                if(value == -1) {
+                    break;
+                }
+                for(int mode = 0; mode < dimension; mode++) {
+                    tupleAttValues[mode] = inAtt.readInt();
+                }
+            }
+            else {
+                break;
+            }
+            for(int i = 0; i < blockNum; i++) {
+                boolean included = true;
+                for(int mode = 0; mode < dimension; mode++) {
+                    if(!masks[i][mode][tupleAttValues[mode]]) {
+                        included = false;
+                        break;
+                    }
+                }
+                if(included) {
+                    masses[i] += value;
+                }
+            }
+        }
+        if(inAtt != null) {
+            inAtt.close();
+            inValue.close();
+        }
+        return masses;
+    }
+
+    protected static IDensityMeasure createMeasure(DensityMeasure densityMeasure) {
+        if(densityMeasure == DensityMeasure.Suspiciousness)
+            return new Suspiciousness();
+        else if(densityMeasure == DensityMeasure.Arithmetic)
+            return new Arithmetic();
+        else
+            return new Geometric();
+    }
+
+    /**
+     * remove every file in the output folder, used for the samples
+     */
+    private void clear() {
+        File dir = new File(outputPath);
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
     /**
      * Remove Temp Files
      */
-    private void remove(int blockNum){
+    protected void remove(int blockNum){
         List<String> filesToRemove = new LinkedList<String>();
         filesToRemove.add(getFullPath(originalAttName));
         filesToRemove.add(getFullPath(originalValueName));
@@ -638,20 +1474,15 @@ public class Proposed {
      * find one block from a given tensor
      * @return mode -> list of attributes contained in the block
      */
-    private BlockInfo findOneBlock(int blockIndex, DensityMeasure densityMeasure, final int policy, final double theta) throws IOException {
+    protected BlockInfo findOneBlock(int blockIndex, DensityMeasure densityMeasure, final int policy, final double theta) throws IOException {
 
         final int dimension = getDimension();
-        final int[] cardinalities = getCardinalities();
-        long mass =  getMass(TensorType.CurrentR);
+        //once R is compacted, attribute values are peeled by their new numbers
+        final boolean compacted = idToAttVal != null;
+        final int[] cardinalities = compacted ? compactCardinalities : getCardinalities();
 
-        // n -> list of attribute values in the nth mode
-        final int[][] modeToAttVals = createModeToAttVals(dimension, cardinalities);
         // (n, i) -> mass of ith attribute value in the nth mode
-        int[][] modeToAttValToMass = getAttValMasses();
-        // n -> num of alive attribute values in the nth mode
-        int[] modeToAliveValuesNum = cardinalities.clone();
-        // n -> num of deleted attributes in the nth mode
-        int[] modeToRemovedValuesNum = new int[dimension];
+        int[][] modeToAttValToMass = copyAttValMasses();
 
         final int sumOfcardinalities = sumOfCarndinalities(dimension, cardinalities);
         IDensityMeasure measure = null;
@@ -666,16 +1497,223 @@ public class Proposed {
         }
 
         copyBlock();
+        if(compacted) {
+            //the first pass reads B instead of R
+            copyCompactedTensor();
+        }
 
-        System.gc();
+        if(blockBufferSize < 0) {
+            System.gc();
+        }
 
         BlockIterInfo iterInfo = new BlockIterInfo(cardinalities, BlockIterInfo.properBufferUsage(sumOfcardinalities), getOrderingFullPath(blockIndex));
-        int maxIters = 0;
-        double maxScoreAmongIters = measure.initialize(getDimension(), getCardinalities(), getMass(TensorType.CurrentR));
+        if(compacted) {
+            iterInfo.setIdToAttVal(idToAttVal);
+        }
+        double score = measure.initialize(getDimension(), cardinalities, getMass(TensorType.CurrentR));
+        if(cardinalitiesOfWholeTensor != null && measure instanceof Suspiciousness) {
+            score = ((Suspiciousness) measure).setWholeTensor(cardinalitiesOfWholeTensor, massOfWholeTensor);
+        }
+        Peeling peeling = new Peeling(dimension, cardinalities, modeToAttValToMass, getMass(TensorType.CurrentR), measure, score, iterInfo, policy, theta, maxTheta);
+
+        if(histogram && policy == POLICY_MAX_DENSITY && !multiMode) {
+            massHistograms = peeling.useMassHistograms();
+        }
+        selectionTimeOfLastBlock = 0;
 
-        int i = 0;
+        stoppedByDeadline = false;
         int iterNum = 0;
-        while (i < sumOfcardinalities) {
+        while (!peeling.isDone()) {
+            if(peeling.stopAtDeadline(deadline)) {
+                stoppedByDeadline = true;
+                break;
+            }
+            if(prune && peeling.stopIfPruned()) {
+                break;
+            }
+            if(multiMode) {
+                //the attribute values below the threshold of each mode are removed together in one pass over B
+                final boolean[][] modeToAttValsToRemove = peeling.selectFromEveryMode();
+                final int[][] modeToAttValToRemovedMass = new int[dimension][];
+                int numOfModesToRemove = 0;
+                for (int mode = 0; mode < dimension; mode++) {
+                    if(modeToAttValsToRemove[mode] != null) {
+                        modeToAttValToRemovedMass[mode] = new int[cardinalities[mode]];
+                        numOfModesToRemove++;
+                    }
+                }
+                final int[] modesToRemove = new int[numOfModesToRemove];
+                for (int mode = 0, k = 0; mode < dimension; mode++) {
+                    if(modeToAttValsToRemove[mode] != null) {
+                        modesToRemove[k++] = mode;
+                    }
+                }
+
+                removeAndUpdateAttValMasses(modesToRemove, modeToAttValsToRemove, modeToAttValToMass, modeToAttValToRemovedMass, iterNum == 0 && !compacted);
+                iterNum ++;
+                peeling.removeFromEveryMode(modeToAttValsToRemove, modeToAttValToRemovedMass);
+                continue;
+            }
+
+            long selectionStart = System.nanoTime();
+            int maxMode = peeling.selectMode();
+            selectionTimeOfLastBlock += System.nanoTime() - selectionStart;
+
+            boolean[] attValsToRemove = peeling.removeFromMode(maxMode);
+            removeAndUpdateAttValMasses(maxMode, attValsToRemove, modeToAttValToMass, iterNum == 0 && !compacted);
+            iterNum ++;
+
+        }
+
+        passesOfLastBlock = iterNum;
+        maxThetaOfLastBlock = peeling.getMaxThetaOfPass();
+        massHistograms = null;
+
+        return peeling.returnBlock(getBlockInfoFullPath(blockIndex));
+    }
+
+    /**
+     * decrease the mass threshold of the adaptive schedule until removing the attribute values below the threshold from the given mode
+     * results in a density at least as high as removing those below the given mass threshold theta
+     * @return mass threshold for the pass, which is at least theta
+     */
+    public static double adaptTheta(IDensityMeasure measure, int mode, int[] attVals, int[] attValToMass, int removedValuesNum, int cardinality, int aliveValuesNum, long mass, double thetaOfPass, final double theta) {
+        double scoreWithTheta = scoreIfRemoved(measure, mode, attVals, attValToMass, removedValuesNum, cardinality, mass * theta / aliveValuesNum);
+        while(thetaOfPass > theta) {
+            if(scoreIfRemoved(measure, mode, attVals, attValToMass, removedValuesNum, cardinality, mass * thetaOfPass / aliveValuesNum) >= scoreWithTheta) {
+                break;
+            }
+            //the ratio to theta is square-rooted, which is rounded to theta once it is close enough
+            thetaOfPass = theta * Math.sqrt(thetaOfPass / theta);
+            if(thetaOfPass < theta * ADAPTIVE_MIN_RATIO) {
+                thetaOfPass = theta;
+            }
+        }
+        return thetaOfPass;
+    }
+
+    /**
+     * return density if the alive attribute values whose masses are at most the given threshold are removed from the given mode
+     */
+    private static double scoreIfRemoved(IDensityMeasure measure, int mode, int[] attVals, int[] attValToMass, int removedValuesNum, int cardinality, double threshold) {
+        int numToRemove = 0;
+        long removedMassSum = 0;
+        for (int j = removedValuesNum; j < cardinality; j++) {
+            int attVal = attVals[j];
+            if (attValToMass[attVal] <= threshold) {
+                numToRemove++;
+                removedMassSum += attValToMass[attVal];
+            }
+        }
+        return measure.ifRemoved(mode, numToRemove, removedMassSum);
+    }
+
+    /**
+     * peeling of one block, shared by every version (Proposed, ProposedDist, ProposedHadoop, and SweepHadoop)
+     * each pass chooses a mode and removes the alive attribute values whose masses are at most the threshold,
+     * then the caller removes them from B and updates the attribute-value masses before the next pass
+     */
+    public static class Peeling {
+
+        private final int dimension;
+        private final int[] cardinalities;
+        private final int policy;
+        private final double theta;
+        private final IDensityMeasure measure;
+        private final BlockIterInfo iterInfo;
+        private final int sumOfCardinalities;
+        private final int[][] modeToAttVals; // n -> list of attribute values in the nth mode
+        private final int[][] modeToAttValToMass; // (n, i) -> mass of ith attribute value in the nth mode
+        private final int[] modeToAliveValuesNum; // n -> num of alive attribute values in the nth mode
+        private final int[] modeToRemovedValuesNum; // n -> num of deleted attributes in the nth mode
+        private MassHistogram[] massHistograms = null; // n -> histogram of the masses in the nth mode, null if not used
+        private long mass;
+        private int i = 0; // num of removed attribute values
+        private int maxIters = 0;
+        private double maxScoreAmongIters;
+        private double thetaOfPass; // mass threshold of the current pass, which starts from maxTheta in the adaptive schedule
+        private double maxThetaOfPass; // largest mass threshold used so far, which determines the accuracy guarantee
+
+        /**
+         * @param modeToAttValToMass (n, i) -> mass of ith attribute value in the nth mode, whose rows are updated or replaced by the caller after each pass
+         * @param score density of B, returned by measure.initialize(...)
+         * @param maxTheta initial mass threshold of the adaptive schedule, 0 for the fixed schedule
+         */
+        public Peeling(int dimension, int[] cardinalities, int[][] modeToAttValToMass, long mass, IDensityMeasure measure, double score, BlockIterInfo iterInfo, int policy, double theta, double maxTheta) {
+            this.dimension = dimension;
+            this.cardinalities = cardinalities;
+            this.modeToAttValToMass = modeToAttValToMass;
+            this.mass = mass;
+            this.measure = measure;
+            this.maxScoreAmongIters = score;
+            this.iterInfo = iterInfo;
+            this.policy = policy;
+            this.theta = theta;
+            modeToAttVals = createModeToAttVals(dimension, cardinalities);
+            modeToAliveValuesNum = cardinalities.clone();
+            modeToRemovedValuesNum = new int[dimension];
+            sumOfCardinalities = sumOfCarndinalities(dimension, cardinalities);
+            thetaOfPass = Math.max(theta, maxTheta);
+            maxThetaOfPass = theta;
+        }
+
+        /**
+         * select the mode by histograms of the attribute-value masses, which should be kept up to date by the caller
+         * @return n -> histogram of the masses in the nth mode
+         */
+        public MassHistogram[] useMassHistograms() {
+            massHistograms = new MassHistogram[dimension];
+            for (int mode = 0; mode < dimension; mode++) {
+                massHistograms[mode] = new MassHistogram(modeToAttValToMass[mode], modeToAttVals[mode], 0, cardinalities[mode]);
+            }
+            return massHistograms;
+        }
+
+        /**
+         * @return true if every attribute value has been removed
+         */
+        public boolean isDone() {
+            return i == sumOfCardinalities;
+        }
+
+        /**
+         * @return largest mass threshold used so far
+         */
+        public double getMaxThetaOfPass() {
+            return maxThetaOfPass;
+        }
+
+        /**
+         * stop the peeling if the given deadline has passed, then the alive attribute values belong to the block
+         * @return true if the peeling was stopped
+         */
+        public boolean stopAtDeadline(long deadline) throws IOException {
+            if(System.currentTimeMillis() <= deadline) {
+                return false;
+            }
+            //the best block so far is returned
+            System.out.println("Deadline reached, " + (sumOfCardinalities - i) + " attribute values were left");
+            addAliveAttVals(iterInfo, dimension, cardinalities, modeToAttVals, modeToRemovedValuesNum);
+            return true;
+        }
+
+        /**
+         * stop the peeling if no block obtained by further removals can be denser than the best one so far
+         * @return true if the peeling was stopped
+         */
+        public boolean stopIfPruned() throws IOException {
+            if(upperBoundOfDensity(measure, dimension, cardinalities, modeToAttVals, modeToAttValToMass, modeToRemovedValuesNum) >= maxScoreAmongIters) {
+                return false;
+            }
+            System.out.println("Peeling stopped early, " + (sumOfCardinalities - i) + " attribute values were left");
+            addAliveAttVals(iterInfo, dimension, cardinalities, modeToAttVals, modeToRemovedValuesNum);
+            return true;
+        }
+
+        /**
+         * @return mode with the most alive attribute values or the mode whose removal results in the highest density, depending on the policy
+         */
+        public int selectMode() {
             int maxMode = 0;
             double maxScoreAmongModes = -Double.MAX_VALUE;
             for (int mode = 0; mode < dimension; mode++) {
@@ -688,16 +1726,23 @@ public class Proposed {
                         }
                     }
                     else if (policy == POLICY_MAX_DENSITY) {
-                        double threshold = mass * theta / modeToAliveValuesNum[mode];
+                        double threshold = mass * thetaOfPass / modeToAliveValuesNum[mode];
                         int numToRemove = 0;
                         long removedMassSum = 0;
-                        int[] attValToMass = modeToAttValToMass[mode];
-                        int[] attVals = modeToAttVals[mode];
-                        for (int j = modeToRemovedValuesNum[mode]; j < cardinalities[mode]; j++) {
-                            int attVal = attVals[j];
-                            if (attValToMass[attVal] <= threshold) {
-                                numToRemove++;
-                                removedMassSum += attValToMass[attVal];
+                        if(massHistograms != null) {
+                            Pair<Integer, Long> removed = massHistograms[mode].atMost(threshold);
+                            numToRemove = removed.getKey();
+                            removedMassSum = removed.getValue();
+                        }
+                        else {
+                            int[] attValToMass = modeToAttValToMass[mode];
+                            int[] attVals = modeToAttVals[mode];
+                            for (int j = modeToRemovedValuesNum[mode]; j < cardinalities[mode]; j++) {
+                                int attVal = attVals[j];
+                                if (attValToMass[attVal] <= threshold) {
+                                    numToRemove++;
+                                    removedMassSum += attValToMass[attVal];
+                                }
                             }
                         }
                         if (numToRemove >= 1) {
@@ -715,47 +1760,161 @@ public class Proposed {
                     }
                 }
             }
+            return maxMode;
+        }
 
-            double threshold = mass * theta / modeToAliveValuesNum[maxMode];
-            final int[] attValToMass = modeToAttValToMass[maxMode];
-            final boolean[] attValsToRemove = new boolean[cardinalities[maxMode]];
+        /**
+         * remove the alive attribute values whose masses are at most the threshold from the given mode in the increasing order of their masses
+         * @return i -> whether ith attribute value of the mode was removed
+         */
+        public boolean[] removeFromMode(int mode) throws IOException {
+            if(thetaOfPass > theta) {
+                thetaOfPass = adaptTheta(measure, mode, modeToAttVals[mode], modeToAttValToMass[mode], modeToRemovedValuesNum[mode], cardinalities[mode], modeToAliveValuesNum[mode], mass, thetaOfPass, theta);
+            }
+            maxThetaOfPass = Math.max(maxThetaOfPass, thetaOfPass);
 
-            sort(modeToAttVals[maxMode], modeToAttValToMass[maxMode], modeToRemovedValuesNum[maxMode], cardinalities[maxMode]-1);
+            double threshold = mass * thetaOfPass / modeToAliveValuesNum[mode];
+            final int[] attValToMass = modeToAttValToMass[mode];
+            final boolean[] attValsToRemove = new boolean[cardinalities[mode]];
 
-            int[] attVals = modeToAttVals[maxMode];
+            sort(modeToAttVals[mode], attValToMass, modeToRemovedValuesNum[mode], cardinalities[mode]-1);
 
-            for (int j = modeToRemovedValuesNum[maxMode]; j < cardinalities[maxMode]; j++) {
+            int[] attVals = modeToAttVals[mode];
+            for (int j = modeToRemovedValuesNum[mode]; j < cardinalities[mode]; j++) {
                 int attVal = attVals[j];
                 if (attValToMass[attVal] <= threshold) {
-                    mass -= attValToMass[attVal];
-                    double score = measure.remove(maxMode, attValToMass[attVal]);
-                    if (score > maxScoreAmongIters) {
-                        maxScoreAmongIters = score;
-                        maxIters = i + 1;
-                    }
-                    modeToRemovedValuesNum[maxMode]++;
-                    modeToAliveValuesNum[maxMode]--;
-                    iterInfo.addIterInfo((byte)maxMode, attVal);
-                    i++;
+                    remove(mode, attVal, attValToMass[attVal]);
                     attValsToRemove[attVal] = true;
+                    if(massHistograms != null) {
+                        massHistograms[mode].remove(attVal);
+                    }
                 }
                 else {
                     break;
                 }
             }
-            removeAndUpdateAttValMasses(maxMode, attValsToRemove, modeToAttValToMass, iterNum == 0);
-            iterNum ++;
+            return attValsToRemove;
+        }
+
+        /**
+         * select the alive attribute values whose masses are at most the threshold of their mode from every mode,
+         * which are removed by removeFromEveryMode(...) once their masses are measured in the pass
+         * @return (n, i) -> whether ith attribute value of the nth mode is removed, null for the modes without one
+         */
+        public boolean[][] selectFromEveryMode() {
+            if(thetaOfPass > theta) {
+                for (int mode = 0; mode < dimension; mode++) {
+                    if(modeToAliveValuesNum[mode] > 0) {
+                        thetaOfPass = adaptTheta(measure, mode, modeToAttVals[mode], modeToAttValToMass[mode], modeToRemovedValuesNum[mode], cardinalities[mode], modeToAliveValuesNum[mode], mass, thetaOfPass, theta);
+                    }
+                }
+            }
+            maxThetaOfPass = Math.max(maxThetaOfPass, thetaOfPass);
+
+            final boolean[][] modeToAttValsToRemove = new boolean[dimension][];
+            for (int mode = 0; mode < dimension; mode++) {
+                if(modeToAliveValuesNum[mode] == 0) {
+                    continue;
+                }
+                double threshold = mass * thetaOfPass / modeToAliveValuesNum[mode];
+                int[] attValToMass = modeToAttValToMass[mode];
+                int[] attVals = modeToAttVals[mode];
+                boolean[] attValsToRemove = new boolean[cardinalities[mode]];
+                boolean any = false;
+                for (int j = modeToRemovedValuesNum[mode]; j < cardinalities[mode]; j++) {
+                    int attVal = attVals[j];
+                    if (attValToMass[attVal] <= threshold) {
+                        attValsToRemove[attVal] = true;
+                        any = true;
+                    }
+                }
+                if(any) {
+                    modeToAttValsToRemove[mode] = attValsToRemove;
+                }
+            }
+            return modeToAttValsToRemove;
+        }
+
+        /**
+         * remove the attribute values selected by selectFromEveryMode() mode by mode with the masses measured in the pass,
+         * thus the density of each prefix is exact
+         * @param modeToAttValToRemovedMass (n, i) -> mass of ith attribute value in the nth mode when it was removed
+         */
+        public void removeFromEveryMode(boolean[][] modeToAttValsToRemove, int[][] modeToAttValToRemovedMass) throws IOException {
+            for (int mode = 0; mode < dimension; mode++) {
+                boolean[] attValsToRemove = modeToAttValsToRemove[mode];
+                if(attValsToRemove == null) {
+                    continue;
+                }
+                int[] attVals = modeToAttVals[mode];
+                int[] attValToRemovedMass = modeToAttValToRemovedMass[mode];
+                int first = modeToRemovedValuesNum[mode];
+                int k = first;
+                for (int j = first; j < cardinalities[mode]; j++) {
+                    int attVal = attVals[j];
+                    if (attValsToRemove[attVal]) {
+                        attVals[j] = attVals[k];
+                        attVals[k++] = attVal;
+                    }
+                }
+                sort(attVals, attValToRemovedMass, first, k - 1);
+                for (int j = first; j < k; j++) {
+                    int attVal = attVals[j];
+                    remove(mode, attVal, attValToRemovedMass[attVal]);
+                }
+            }
+        }
+
+        private void remove(int mode, int attVal, int attValMass) throws IOException {
+            mass -= attValMass;
+            double score = measure.remove(mode, attValMass);
+            if (score > maxScoreAmongIters) {
+                maxScoreAmongIters = score;
+                maxIters = i + 1;
+            }
+            modeToRemovedValuesNum[mode]++;
+            modeToAliveValuesNum[mode]--;
+            iterInfo.addIterInfo((byte)mode, attVal);
+            i++;
+        }
+
+        /**
+         * @return block with the attribute values removed after the density was maximized, which is written to the given path
+         */
+        public BlockInfo returnBlock(String blockInfoPath) throws IOException {
+            return iterInfo.returnBlock(maxIters, blockInfoPath);
+        }
+    }
 
+    /**
+     * upper bound on the density of any block obtained by removing attribute values from the current block
+     * @param modeToAttValToMass (n, i) -> mass of ith attribute value in the nth mode, which should be up to date
+     */
+    public static double upperBoundOfDensity(IDensityMeasure measure, int dimension, int[] cardinalities, int[][] modeToAttVals, int[][] modeToAttValToMass, int[] modeToRemovedValuesNum) {
+        int[] maxMasses = new int[dimension];
+        for(int mode = 0; mode < dimension; mode++) {
+            int[] attValToMass = modeToAttValToMass[mode];
+            int[] attVals = modeToAttVals[mode];
+            for (int j = modeToRemovedValuesNum[mode]; j < cardinalities[mode]; j++) {
+                maxMasses[mode] = Math.max(maxMasses[mode], attValToMass[attVals[j]]);
+            }
         }
+        return measure.upperBound(maxMasses);
+    }
 
-        //free attValMasses info
+    /**
+     * add the alive attribute values to the removal order when the peeling stops early, so that they belong to the block
+     */
+    public static void addAliveAttVals(BlockIterInfo iterInfo, int dimension, int[] cardinalities, int[][] modeToAttVals, int[] modeToRemovedValuesNum) throws IOException {
         for(int mode = 0; mode < dimension; mode++) {
-            attValMasses[mode] = new int[0];
+            int[] attVals = modeToAttVals[mode];
+            for (int j = modeToRemovedValuesNum[mode]; j < cardinalities[mode]; j++) {
+                iterInfo.addIterInfo((byte)mode, attVals[j]);
+            }
         }
-        return iterInfo.returnBlock(maxIters, getBlockInfoFullPath(blockIndex));
     }
 
-    private static int sumOfCarndinalities(int dimension, int[] cardinalities){
+    public static int sumOfCarndinalities(int dimension, int[] cardinalities){
         int sumOfcardinalities = 0;
         for(int mode = 0; mode < dimension; mode++) {
             sumOfcardinalities += cardinalities[mode];
@@ -769,7 +1928,7 @@ public class Proposed {
      * @param cardinalities
      * @return
      */
-    private static int[][] createModeToAttVals(final int dimension, int[] cardinalities) {
+    public static int[][] createModeToAttVals(final int dimension, int[] cardinalities) {
         int[][] modeToIndices = new int[dimension][];
         for(int mode = 0; mode < dimension; mode++) {
             int[] indices = new int[cardinalities[mode]];
@@ -788,7 +1947,7 @@ public class Proposed {
      * @param left
      * @param right
      */
-    private static void sort(int[] attributes, int[] masses, int left, int right) {
+    public static void sort(int[] attributes, int[] masses, int left, int right) {
 
         if (attributes == null || attributes.length == 0)
             return;
@@ -825,6 +1984,18 @@ public class Proposed {
             sort(attributes, masses, i, right);
     }
 
+    /**
+     * write the numbers of the blocks whose peeling was stopped by the deadline, one per line
+     */
+    private static void writePartialBlocks(String path, List<Integer> partialBlocks) throws IOException {
+        BufferedWriter bw = new BufferedWriter(new FileWriter(path));
+        for(int blockNumber : partialBlocks) {
+            bw.write(String.valueOf(blockNumber));
+            bw.newLine();
+        }
+        bw.close();
+    }
+
     /**
      * write blocks found to the given output folder
      * @param output    output path
@@ -832,7 +2003,7 @@ public class Proposed {
      * @param blockInfoList   blocks found
      * @throws IOException
      */
-    private static void writeOutput(String output, Tensor tensor, List<BlockInfo> blockInfoList) throws IOException {
+    protected static void writeOutput(String output, Tensor tensor, List<BlockInfo> blockInfoList) throws IOException {
 
         int blockNum = blockInfoList.size();
         int dimension = tensor.dimension;
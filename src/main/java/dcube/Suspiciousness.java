@@ -41,6 +41,16 @@ public class Suspiciousness implements IDensityMeasure {
         return density(massOfBlock, productOfCardinalitiesOfBlock);
     }
 
+    /**
+     * measure suspiciousness against the given tensor, which contains the tensor given to initialize(...)
+     * @return density of the current block
+     */
+    public double setWholeTensor(int[] cardinalitiesOfAll, long massOfAll) {
+        this.massOfAll = massOfAll;
+        productOfCardinalitiesOfAll = productOfCardinalities(cardinalitiesOfAll);
+        return density(massOfBlock, productOfCardinalitiesOfBlock);
+    }
+
     public double ifRemoved(int attribute, int mass) {
         return density(massOfBlock - mass, productOfCardinalitiesOfBlock / cardinalities[attribute] * (cardinalities[attribute] - 1));
     }
@@ -64,6 +74,13 @@ public class Suspiciousness implements IDensityMeasure {
         return density(massOfBlock, productOfCardinalitiesOfBlock);
     }
 
+    /**
+     * suspiciousness is not bounded by the masses of attribute values, thus no block is pruned
+     */
+    public double upperBound(int[] maxMasses) {
+        return Double.MAX_VALUE;
+    }
+
     private double density(long massOfBlock, double productOfCardinalitiesOfBlock) {
         if(productOfCardinalitiesOfBlock == 0 || massOfBlock == 0)
             return - 1;
@@ -16,6 +16,7 @@
 package dcube;
 
 import java.io.*;
+import java.util.Random;
 
 /**
  * Methods for handling tensors
@@ -127,4 +128,170 @@ public class TensorMethods {
         return attValMasses;
     }
 
+    /**
+     * draw a Bernoulli sample of the tuples in the given tensor
+     * each tuple is kept with the given probability, and its measure value is kept as it is
+     * dividing a mass in the sample by the probability gives an unbiased estimate of the mass in the given tensor,
+     * and since every density measure is proportional to the masses, the same holds for densities
+     * @param tensor tensor to sample
+     * @param rate probability that each tuple is kept
+     * @param random random number generator
+     * @param bufferSize maximum number of sampled tuples kept in memory, the rest is spilled
+     * @param attFilePath path of the attribute file to spill the sample
+     * @param valueFilePath path of the measure value file to spill the sample
+     * @return sampled tensor
+     */
+    public static Tensor sampleTensor(Tensor tensor, double rate, Random random, int bufferSize, String attFilePath, String valueFilePath) throws IOException {
+
+        final int dimension = tensor.dimension;
+        final int[][] attVals = new int[dimension][bufferSize];
+        final int[] values = new int[bufferSize];
+        int bufferUsage = 0;
+        long omega = 0;
+        long sum = 0;
+
+        ObjectOutputStream outAtt = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(attFilePath), 8388608));
+        ObjectOutputStream outValue = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(valueFilePath), 8388608));
+        int[] tupleAttValues = new int[dimension];
+        ObjectInputStream inAtt = null;
+        ObjectInputStream inValue = null;
+        if(tensor.diskUsage > 0) {
+            inAtt = new ObjectInputStream(new BufferedInputStream(new FileInputStream(tensor.attFilePath), 8388608));
+            inValue = new ObjectInputStream(new BufferedInputStream(new FileInputStream(tensor.valueFilePath), 8388608));
+        }
+        for(long i = 0; ; i++) {
+            int value;
+            if(i < tensor.bufferUsage) {
+                value = tensor.measureValues[(int)i];
+                for (int mode = 0; mode < dimension; mode++) {
+                    tupleAttValues[mode] = tensor.attributes[mode][(int)i];
+                }
+            }
+            else if(inValue != null) {
+                value = inValue.readInt();
+                if(value == -1) {
+                    break;
+                }
+                for (int mode = 0; mode < dimension; mode++) {
+                    tupleAttValues[mode] = inAtt.readInt();
+                }
+            }
+            else {
+                break;
+            }
+
+            if(random.nextDouble() >= rate) {
+                continue;
+            }
+            if(bufferUsage < bufferSize) {
+                for (int mode = 0; mode < dimension; mode++) {
+                    attVals[mode][bufferUsage] = tupleAttValues[mode];
+                }
+                values[bufferUsage++] = value;
+            }
+            else {
+                outValue.writeInt(value);
+                for (int mode = 0; mode < dimension; mode++) {
+                    outAtt.writeInt(tupleAttValues[mode]);
+                }
+            }
+            sum += value;
+            omega++;
+        }
+        outValue.writeInt(-1);
+        if(inAtt != null) {
+            inAtt.close();
+            inValue.close();
+        }
+        outAtt.close();
+        outValue.close();
+
+        return new Tensor(dimension, tensor.cardinalities, attVals, values, omega, sum, bufferSize, bufferUsage, attFilePath, valueFilePath);
+    }
+
+    /**
+     * remove the tuples in the buffer of the given tensor that have the given attribute values and update attribute-value masses
+     * the remaining tuples are compacted at the front of the buffer, while the spilled tuples are not touched
+     * @param tensor tensor whose buffer is updated
+     * @param modeToRemove mode of the attribute values to remove
+     * @param attToRemove attribute values to remove
+     * @param attMasses attribute-value masses of the tensor
+     */
+    public static void removeFromBuffer(Tensor tensor, int modeToRemove, boolean[] attToRemove, int[][] attMasses) {
+        removeFromBuffer(tensor, modeToRemove, attToRemove, attMasses, null, null);
+    }
+
+    /**
+     * @param histograms n -> histogram of attMasses[n], which is updated together, null if there is none
+     * @param tracker tracker of the changes of attMasses, null if there is none
+     */
+    public static void removeFromBuffer(Tensor tensor, int modeToRemove, boolean[] attToRemove, int[][] attMasses, MassHistogram[] histograms, AttValMassTracker tracker) {
+
+        int dimension = tensor.dimension;
+        int[][] attributes = tensor.attributes;
+        int[] modeAttributes = tensor.attributes[modeToRemove];
+        int[] values = tensor.measureValues;
+
+        for(int mode = 0; mode < dimension; mode++) {
+            if(mode == modeToRemove)
+                continue;
+            int bufferUsage = tensor.bufferUsage;
+            int[] modeDegree = attMasses[mode];
+            MassHistogram histogram = histograms == null ? null : histograms[mode];
+            int[] updatedModeAttributes = attributes[mode];
+            for (int bufferIndex = 0; bufferIndex < bufferUsage; bufferIndex++) {
+                if (attToRemove[modeAttributes[bufferIndex]]) {
+                    modeDegree[updatedModeAttributes[bufferIndex]] -= values[bufferIndex];
+                    if(histogram != null) {
+                        histogram.decreased(updatedModeAttributes[bufferIndex], values[bufferIndex]);
+                    }
+                    if(tracker != null) {
+                        tracker.changed(mode, updatedModeAttributes[bufferIndex]);
+                    }
+                    bufferUsage--;
+                    for(; bufferUsage > bufferIndex; bufferUsage--){
+                        if(!attToRemove[modeAttributes[bufferUsage]]) {
+                            updatedModeAttributes[bufferIndex] = updatedModeAttributes[bufferUsage];
+                            break;
+                        }
+                        else {
+                            modeDegree[updatedModeAttributes[bufferUsage]] -= values[bufferUsage];
+                            if(histogram != null) {
+                                histogram.decreased(updatedModeAttributes[bufferUsage], values[bufferUsage]);
+                            }
+                            if(tracker != null) {
+                                tracker.changed(mode, updatedModeAttributes[bufferUsage]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        int bufferUsage = tensor.bufferUsage;
+        int[] modeAttMasses = attMasses[modeToRemove];
+        for (int bufferIndex = 0; bufferIndex < bufferUsage; bufferIndex++) {
+            if (attToRemove[modeAttributes[bufferIndex]]) {
+                modeAttMasses[modeAttributes[bufferIndex]] = 0;  // set to 0;
+                if(tracker != null) {
+                    tracker.changed(modeToRemove, modeAttributes[bufferIndex]);
+                }
+                bufferUsage--;
+                for(; bufferUsage > bufferIndex; bufferUsage--){
+                    if(!attToRemove[modeAttributes[bufferUsage]]) {
+                        modeAttributes[bufferIndex] = modeAttributes[bufferUsage];
+                        values[bufferIndex] = values[bufferUsage];
+                        break;
+                    }
+                    else {
+                        modeAttMasses[modeAttributes[bufferUsage]] = 0;
+                        if(tracker != null) {
+                            tracker.changed(modeToRemove, modeAttributes[bufferUsage]);
+                        }
+                    }
+                }
+            }
+        }
+        tensor.bufferUsage = bufferUsage;
+    }
+
 }
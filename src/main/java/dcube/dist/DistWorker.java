@@ -0,0 +1,228 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package dcube.dist;
+
+import dcube.AttValMassTracker;
+import dcube.Proposed;
+import dcube.Tensor;
+import dcube.TensorMethods;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * Worker of the distributed version, which holds a partition of the input tensor in memory and local spill files
+ * The worker is driven by ProposedDist over a socket, and each command is run by the single-machine kernels of Proposed
+ * @author kijungs
+ */
+public class DistWorker extends Proposed {
+
+    /**
+     * Main function
+     *
+     * @param args driver_host, driver_port, work_path
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: run_dist_worker.sh driver_host driver_port work_path");
+            System.exit(-1);
+        }
+
+        final String host = args[0];
+        final int port = Integer.valueOf(args[1]);
+        final String workPath = args[2];
+        new File(workPath).mkdirs();
+
+        Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 8388608));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 8388608));
+        System.out.println("connected to " + host + ":" + port);
+
+        if(in.readByte() != Protocol.LOAD) {
+            throw new IOException("The first command should be LOAD");
+        }
+        Tensor partition = load(in, workPath);
+        DistWorker worker = new DistWorker(partition, workPath);
+        worker.serve(in, out);
+        socket.close();
+        worker.clear();
+    }
+
+    /**
+     * receive the tuples of the partition and store them in the binary format
+     */
+    private static Tensor load(DataInputStream in, String workPath) throws IOException {
+        final int dimension = in.readInt();
+        String partitionPath = workPath + File.separator + "partition";
+        BufferedWriter bw = new BufferedWriter(new FileWriter(partitionPath), 8388608);
+        int[] attVals = new int[dimension];
+        long omega = 0;
+        while(true) {
+            int value = Protocol.readTuple(in, attVals);
+            if(value == -1) {
+                break;
+            }
+            for(int mode = 0; mode < dimension; mode++) {
+                bw.write(attVals[mode] + ",");
+            }
+            bw.write("" + value);
+            bw.newLine();
+            omega++;
+        }
+        bw.close();
+
+        final int[] cardinalities = new int[dimension];
+        for(int mode = 0; mode < dimension; mode++) {
+            cardinalities[mode] = in.readInt();
+        }
+        System.out.println("partition: " + omega + " tuples");
+
+        int bufferSize = getProperBufferSizeForInputTensor(dimension, omega, cardinalities);
+        Tensor partition = TensorMethods.importSparseTensor(partitionPath, ",", dimension, cardinalities, bufferSize, workPath + File.separator + originalAttName, workPath + File.separator + originalValueName);
+        new File(partitionPath).delete();
+        return partition;
+    }
+
+    private final Tensor partition;
+    private final String workPath;
+    private boolean isFirst; // true if no attribute value has been removed from the current block
+    private int[][] blockAttValMasses; // (n, i) -> mass of ith attribute value in the nth mode of the current block
+    private AttValMassTracker tracker; // tracker of the changes of blockAttValMasses since the last REMOVE
+
+    private DistWorker(Tensor partition, String workPath) throws IOException {
+        super(partition, workPath);
+        this.partition = partition;
+        this.workPath = workPath;
+    }
+
+    private void serve(DataInputStream in, DataOutputStream out) throws IOException {
+
+        copyOriTesnor();
+        initialize();
+        Protocol.writeAttValMasses(out, getAttValMasses());
+        out.flush();
+
+        final int dimension = partition.dimension;
+        while(true) {
+            byte command = in.readByte();
+            if(command == Protocol.START_BLOCK) {
+                copyBlock();
+                blockAttValMasses = copyAttValMasses();
+                tracker = new AttValMassTracker(blockAttValMasses);
+                setMassTracker(tracker);
+                isFirst = true;
+                out.writeBoolean(true);
+            }
+            else if(command == Protocol.REMOVE) {
+                int mode = in.readInt();
+                boolean[] attValsToRemove = Protocol.readAttVals(in);
+                removeAndUpdateAttValMasses(mode, attValsToRemove, blockAttValMasses, isFirst);
+                isFirst = false;
+                Protocol.writeAttValMassChanges(out, tracker, dimension);
+            }
+            else if(command == Protocol.REMOVE_BLOCK) {
+                boolean[][] mask = readMask(in, dimension);
+                out.writeLong(removeBlock(mask));
+                Protocol.writeAttValMasses(out, getAttValMasses());
+            }
+            else if(command == Protocol.WRITE) {
+                int blockNum = in.readInt();
+                for(int blockIndex = 0; blockIndex < blockNum; blockIndex++) {
+                    writeTuples(out, readMask(in, dimension));
+                }
+            }
+            else if(command == Protocol.SHUTDOWN) {
+                return;
+            }
+            else {
+                throw new IOException("Unknown command: " + command);
+            }
+            out.flush();
+        }
+    }
+
+    private static boolean[][] readMask(DataInputStream in, int dimension) throws IOException {
+        boolean[][] mask = new boolean[dimension][];
+        for(int mode = 0; mode < dimension; mode++) {
+            mask[mode] = Protocol.readAttVals(in);
+        }
+        return mask;
+    }
+
+    /**
+     * send the tuples of the partition in the given block
+     */
+    private void writeTuples(DataOutputStream out, boolean[][] mask) throws IOException {
+        final int dimension = partition.dimension;
+        final int[][] attributes = partition.attributes;
+        final int[] measureValues = partition.measureValues;
+        int[] tupleAttValues = new int[dimension];
+        for(int i = 0; i < partition.bufferUsage; i++) {
+            boolean write = true;
+            for(int mode = 0; mode < dimension; mode++) {
+                tupleAttValues[mode] = attributes[mode][i];
+                if(!mask[mode][tupleAttValues[mode]]) {
+                    write = false;
+                    break;
+                }
+            }
+            if(write) {
+                Protocol.writeTuple(out, tupleAttValues, measureValues[i]);
+            }
+        }
+
+        if(partition.diskUsage > 0) {
+            ObjectInputStream inAtt = new ObjectInputStream(new BufferedInputStream(new FileInputStream(partition.attFilePath), 8388608));
+            ObjectInputStream inValue = new ObjectInputStream(new BufferedInputStream(new FileInputStream(partition.valueFilePath), 8388608));
+            while (true) {
+                int value = inValue.readInt();
+                if (value == -1) {
+                    break;
+                }
+                boolean write = true;
+                for (int mode = 0; mode < dimension; mode++) {
+                    tupleAttValues[mode] = inAtt.readInt();
+                    if (!mask[mode][tupleAttValues[mode]]) {
+                        write = false;
+                    }
+                }
+                if (write) {
+                    Protocol.writeTuple(out, tupleAttValues, value);
+                }
+            }
+            inAtt.close();
+            inValue.close();
+        }
+        Protocol.writeEndOfTuples(out);
+    }
+
+    /**
+     * Remove Temp Files
+     */
+    private void clear() {
+        File dir = new File(workPath);
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,535 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package dcube.dist;
+
+import dcube.*;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * D-Cube Distributed Version with persistent workers
+ * The input tensor is partitioned among long-lived worker processes (DistWorker), which are coordinated over sockets
+ * Each iteration is a broadcast of the attribute values to remove and a reduction of the changes of attribute-value masses,
+ * thus no job is launched per iteration
+ * @author kijungs
+ */
+public class ProposedDist {
+
+    /**
+     * Main function
+     *
+     * @param args input_path, output_path, dimension, density_measure, policy, mass_threshold, num_of_blocks, num_of_workers
+     * @throws IOException
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 8) {
+            printError();
+            System.exit(-1);
+        }
+
+        final String input = args[0];
+        System.out.println("input_path: " + input);
+
+        final String output = args[1];
+        System.out.println("output_path: " + output);
+        File dir = new File(output);
+        try{
+            dir.mkdir();
+        }
+        catch(Exception e){
+        }
+
+        final int dimension = Integer.valueOf(args[2]);
+        System.out.println("dimension: " + dimension);
+
+        DensityMeasure densityMeasure = null;
+        if (args[3].compareToIgnoreCase("ARI") == 0) {
+            densityMeasure = DensityMeasure.Arithmetic;
+        } else if (args[3].compareToIgnoreCase("GEO") == 0) {
+            densityMeasure = DensityMeasure.Geometric;
+        } else if (args[3].compareToIgnoreCase("SUSP") == 0) {
+            densityMeasure = DensityMeasure.Suspiciousness;
+        } else {
+            System.err.println("Unknown Density Measure");
+            printError();
+            System.exit(-1);
+        }
+        System.out.println("density_measure: " + args[3]);
+
+        int policy = 0;
+        if (args[4].compareToIgnoreCase("CARDINALITY") == 0) {
+            policy = Proposed.POLICY_MAX_CARNDILITY;
+        } else if(args[4].compareToIgnoreCase("DENSITY") == 0) {
+            policy = Proposed.POLICY_MAX_DENSITY;
+        } else {
+            System.err.println("Unknown Policy");
+            printError();
+            System.exit(-1);
+        }
+        System.out.println("policy: " + args[4]);
+
+        final double theta = Double.valueOf(args[5]);
+        System.out.println("mass_threshold: " + theta);
+        if(theta < 1) {
+            System.err.println("Mass_threshold should be greater than or equal to one");
+            printError();
+            System.exit(-1);
+        }
+
+        final int blockNum = Integer.valueOf(args[6]);
+        System.out.println("num_of_blocks: " + blockNum);
+
+        final int workerNum = Integer.valueOf(args[7]);
+        System.out.println("num_of_workers: " + workerNum);
+        if(workerNum < 1) {
+            System.err.println("Num_of_workers should be at least one");
+            printError();
+            System.exit(-1);
+        }
+
+        int port = 0;
+        boolean external = false;
+        for(int i = 8; i < args.length; i++) {
+            if(args[i].compareToIgnoreCase("--port") == 0 && i + 1 < args.length) {
+                port = Integer.valueOf(args[++i]);
+            } else if(args[i].compareToIgnoreCase("--external") == 0) {
+                external = true;
+            } else {
+                System.err.println("Unknown Option: " + args[i]);
+                printError();
+                System.exit(-1);
+            }
+        }
+        if(external && port == 0) {
+            System.err.println("--external requires --port");
+            printError();
+            System.exit(-1);
+        }
+        System.out.println("external_workers: " + external);
+
+        System.out.println();
+        System.out.println("running the algorithm...");
+        ProposedDist proposed = new ProposedDist(output, dimension);
+        try {
+            proposed.connect(workerNum, port, external);
+            proposed.run(input, blockNum, densityMeasure, policy, theta);
+        } finally {
+            proposed.shutdown();
+        }
+    }
+
+    private static void printError() {
+        System.err.println("Usage: run_dist.sh input_path output_path dimension density_measure policy mass_threshold num_of_blocks num_of_workers [--port port] [--external]");
+        System.err.println("Density_measure should be one of [ari, geo, susp]");
+        System.err.println("Policy should be one of [density, cardinality]");
+        System.err.println("Mass_threshold should be a number greater than or equal to one");
+        System.err.println("Workers are started on localhost unless --external is given, in which case num_of_workers workers should be started by run_dist_worker.sh");
+    }
+
+    private final static int ACCEPT_INTERVAL = 1000; // milliseconds between the checks of the local workers while waiting for connections
+    private final static int CONNECT_TIMEOUT = 600000; // milliseconds to wait until all the workers are connected
+
+    private final String outputPath;
+    private final int dimension;
+    private int[] cardinalities;
+    private int[][] attValMasses; // (n, i) -> mass of ith attribute value in the nth mode, summed over the workers
+    private long massR;
+    private long massRori;
+
+    private ServerSocket serverSocket;
+    private Socket[] sockets;
+    private DataInputStream[] ins;
+    private DataOutputStream[] outs;
+    private List<Process> processes = new LinkedList<Process>();
+
+    public ProposedDist(String outputPath, int dimension) {
+        this.outputPath = outputPath;
+        this.dimension = dimension;
+    }
+
+    private String getWorkPath(int workerIndex) {
+        return outputPath + File.separator + "worker_" + workerIndex;
+    }
+
+    private String getOrderingFullPath(int blockIndex) {
+        return outputPath + File.separator + "ordering_info" + blockIndex;
+    }
+
+    private String getBlockInfoFullPath(int blockIndex) {
+        return outputPath + File.separator + "block_info" + blockIndex;
+    }
+
+    /**
+     * start the workers on localhost, unless they are external, and wait until all of them are connected
+     * the local workers are checked every ACCEPT_INTERVAL milliseconds, and the run fails if any of them exits before connecting
+     * or if not all the workers are connected within CONNECT_TIMEOUT milliseconds
+     * @param port port to listen, any free port if 0
+     */
+    public void connect(int workerNum, int port, boolean external) throws IOException {
+        serverSocket = new ServerSocket(port);
+        serverSocket.setSoTimeout(ACCEPT_INTERVAL);
+        System.out.println("listening on port " + serverSocket.getLocalPort());
+        if(!external) {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            for (int workerIndex = 0; workerIndex < workerNum; workerIndex++) {
+                List<String> command = new LinkedList<String>();
+                command.add(java);
+                command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments()); // e.g., -Xmx
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(DistWorker.class.getName());
+                command.add("localhost");
+                command.add("" + serverSocket.getLocalPort());
+                command.add(getWorkPath(workerIndex));
+                ProcessBuilder builder = new ProcessBuilder(command);
+                builder.redirectErrorStream(true);
+                builder.redirectOutput(new File(getWorkPath(workerIndex) + ".log"));
+                processes.add(builder.start());
+            }
+        }
+
+        sockets = new Socket[workerNum];
+        ins = new DataInputStream[workerNum];
+        outs = new DataOutputStream[workerNum];
+        final long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+        for(int workerIndex = 0; workerIndex < workerNum; workerIndex++) {
+            while(sockets[workerIndex] == null) {
+                try {
+                    sockets[workerIndex] = serverSocket.accept();
+                } catch (SocketTimeoutException e) {
+                    checkWorkers();
+                    if(System.currentTimeMillis() > deadline) {
+                        throw new IOException("Only " + workerIndex + " of " + workerNum + " workers were connected in " + CONNECT_TIMEOUT / 1000 + " seconds");
+                    }
+                }
+            }
+            sockets[workerIndex].setTcpNoDelay(true);
+            ins[workerIndex] = new DataInputStream(new BufferedInputStream(sockets[workerIndex].getInputStream(), 8388608));
+            outs[workerIndex] = new DataOutputStream(new BufferedOutputStream(sockets[workerIndex].getOutputStream(), 8388608));
+            System.out.println("worker " + workerIndex + " was connected (" + sockets[workerIndex].getRemoteSocketAddress() + ")");
+        }
+    }
+
+    /**
+     * check whether any local worker has exited
+     */
+    private void checkWorkers() throws IOException {
+        int workerIndex = 0;
+        for(Process process : processes) {
+            if(!process.isAlive()) {
+                throw new IOException("Worker " + workerIndex + " exited with code " + process.exitValue() + ", see " + getWorkPath(workerIndex) + ".log");
+            }
+            workerIndex++;
+        }
+    }
+
+    /**
+     * stop the workers and wait until the local ones exit
+     * the sockets are closed first, thus the workers that were not sent SHUTDOWN, e.g., after a failed connect(...), also exit
+     */
+    public void shutdown() throws Exception {
+        if(outs != null) {
+            for (DataOutputStream out : outs) {
+                if(out != null) {
+                    try {
+                        out.writeByte(Protocol.SHUTDOWN);
+                        out.flush();
+                    } catch (IOException e) {
+                    }
+                }
+            }
+        }
+        if(sockets != null) {
+            for (Socket socket : sockets) {
+                if(socket != null) {
+                    socket.close();
+                }
+            }
+        }
+        if(serverSocket != null) {
+            serverSocket.close();
+        }
+        for(Process process : processes) {
+            process.waitFor();
+        }
+    }
+
+    /**
+     * send the tuples to the workers in a round-robin manner and compute the cardinalities
+     */
+    private void load(String input) throws IOException {
+        long start = System.currentTimeMillis();
+        int workerNum = outs.length;
+        for(DataOutputStream out : outs) {
+            out.writeByte(Protocol.LOAD);
+            out.writeInt(dimension);
+        }
+
+        final int[] maxAttVals = new int[dimension];
+        final int[] attVals = new int[dimension];
+        long omega = 0;
+        final BufferedReader br = new BufferedReader(new FileReader(input));
+        while(true){
+            final String line = br.readLine();
+            if(line==null)
+                break;
+
+            final String[] tokens = line.split(",");
+            if(tokens.length < dimension + 1) {
+                System.out.println("Skipped Line: " + line);
+                continue;
+            }
+            for(int mode = 0; mode < dimension; mode++) {
+                attVals[mode] = Integer.valueOf(tokens[mode]);
+                maxAttVals[mode] = Math.max(maxAttVals[mode], attVals[mode]);
+            }
+            Protocol.writeTuple(outs[(int)(omega % workerNum)], attVals, Integer.valueOf(tokens[dimension]));
+            omega++;
+        }
+        br.close();
+
+        cardinalities = new int[dimension];
+        for(int mode = 0; mode < dimension; mode++) {
+            cardinalities[mode] = maxAttVals[mode] + 1;
+        }
+        for(DataOutputStream out : outs) {
+            Protocol.writeEndOfTuples(out);
+            for(int mode = 0; mode < dimension; mode++) {
+                out.writeInt(cardinalities[mode]);
+            }
+            out.flush();
+        }
+
+        attValMasses = new int[dimension][];
+        for(int mode = 0; mode < dimension; mode++) {
+            attValMasses[mode] = new int[cardinalities[mode]];
+        }
+        for(DataInputStream in : ins) {
+            Protocol.addAttValMasses(in, attValMasses);
+        }
+        massR = computeMass(attValMasses);
+        massRori = massR;
+        System.out.println("Loading," + (System.currentTimeMillis() - start) + " (" + omega + " tuples)");
+    }
+
+    private long computeMass(int[][] attValMasses) {
+        long mass = 0;
+        for(int attVal = 0; attVal < cardinalities[0]; attVal++) {
+            mass += attValMasses[0][attVal];
+        }
+        return mass;
+    }
+
+    public void run(String input, final int blockNum, DensityMeasure densityMeasure, final int policy, final double theta) throws IOException {
+
+        long start = System.currentTimeMillis();
+        load(input);
+
+        IDensityMeasure measure = createMeasure(densityMeasure);
+        measure.initialize(dimension, cardinalities, massRori);
+
+        List<BlockInfo> listOfBlocks = new LinkedList<BlockInfo>();
+        double bestAccuracy = 0;
+        for(int i = 0; i < blockNum; i++) {
+            BlockInfo block = findOneBlock(i, densityMeasure, policy, theta);
+            bestAccuracy = Math.max(bestAccuracy, removeAndEvaluateBlock(i, block, measure));
+            listOfBlocks.add(block);
+        }
+        System.out.println("Running time: " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds");
+
+        start = System.currentTimeMillis();
+        System.out.println("Writing outputs...");
+        writeOutput(listOfBlocks);
+        System.out.println("Outputs were written. " + (System.currentTimeMillis() - start + 0.0) / 1000 + " seconds was taken.");
+
+        System.out.println("Removing temporary files...");
+        remove(blockNum);
+        System.out.println("Temporary files were removed.");
+    }
+
+    private static IDensityMeasure createMeasure(DensityMeasure densityMeasure) {
+        if(densityMeasure == DensityMeasure.Suspiciousness)
+            return new Suspiciousness();
+        else if(densityMeasure == DensityMeasure.Arithmetic)
+            return new Arithmetic();
+        else
+            return new Geometric();
+    }
+
+    /**
+     * find one block from the current tensor, the workers remove the tuples and report the changes of masses in each iteration
+     */
+    private BlockInfo findOneBlock(int blockIndex, DensityMeasure densityMeasure, final int policy, final double theta) throws IOException {
+
+        // (n, i) -> mass of ith attribute value in the nth mode
+        int[][] modeToAttValToMass = attValMasses;
+
+        final int sumOfcardinalities = Proposed.sumOfCarndinalities(dimension, cardinalities);
+        IDensityMeasure measure = createMeasure(densityMeasure);
+
+        for(DataOutputStream out : outs) {
+            out.writeByte(Protocol.START_BLOCK);
+            out.flush();
+        }
+        for(DataInputStream in : ins) {
+            in.readBoolean();
+        }
+
+        BlockIterInfo iterInfo = new BlockIterInfo(cardinalities, BlockIterInfo.properBufferUsage(sumOfcardinalities), getOrderingFullPath(blockIndex));
+        double score = measure.initialize(dimension, cardinalities, massR);
+        Proposed.Peeling peeling = new Proposed.Peeling(dimension, cardinalities, modeToAttValToMass, massR, measure, score, iterInfo, policy, theta, 0);
+
+        while (!peeling.isDone()) {
+            int maxMode = peeling.selectMode();
+            boolean[] attValsToRemove = peeling.removeFromMode(maxMode);
+
+            //broadcast the attribute values to remove, then sum the changes of masses reported by the workers
+            for(DataOutputStream out : outs) {
+                out.writeByte(Protocol.REMOVE);
+                out.writeInt(maxMode);
+                Protocol.writeAttVals(out, attValsToRemove);
+                out.flush();
+            }
+            for(DataInputStream in : ins) {
+                Protocol.addAttValMasses(in, modeToAttValToMass);
+            }
+        }
+
+        return peeling.returnBlock(getBlockInfoFullPath(blockIndex));
+    }
+
+    private void writeMask(DataOutputStream out, BlockInfo block) throws IOException {
+        boolean[][] mask = block.getBitMask(dimension, cardinalities);
+        for(int mode = 0; mode < dimension; mode++) {
+            Protocol.writeAttVals(out, mask[mode]);
+        }
+    }
+
+    /**
+     * remove the given block from R in every worker and sum the masses of the block and the new attribute-value masses of R
+     */
+    private double removeAndEvaluateBlock(int blockIndex, BlockInfo block, IDensityMeasure measure) throws IOException {
+
+        for(DataOutputStream out : outs) {
+            out.writeByte(Protocol.REMOVE_BLOCK);
+            writeMask(out, block);
+            out.flush();
+        }
+        for(int mode = 0; mode < dimension; mode++) {
+            attValMasses[mode] = new int[cardinalities[mode]];
+        }
+        long massB = 0;
+        for(DataInputStream in : ins) {
+            massB += in.readLong();
+            Protocol.addAttValMasses(in, attValMasses);
+        }
+        massR = computeMass(attValMasses);
+
+        final int[] cardinalitiesOfBlock = block.blockCardinalities;
+        System.out.println("Block: " + (blockIndex+1));
+        System.out.print("Volume: ");
+        for(int mode = 0; mode < dimension; mode++) {
+            System.out.print(cardinalitiesOfBlock[mode]);
+            if(mode < dimension - 1) {
+                System.out.print(" X ");
+            }
+        }
+        System.out.println();
+        double density = measure.density(massB, cardinalitiesOfBlock);
+        System.out.println("Density: " + density);
+        System.out.println("Mass: " + massB);
+
+        return density;
+    }
+
+    /**
+     * write blocks found to the output folder, the tuples in each block are collected from the workers
+     * @param blockInfoList   blocks found
+     * @throws IOException
+     */
+    private void writeOutput(List<BlockInfo> blockInfoList) throws IOException {
+
+        int blockNum = blockInfoList.size();
+        BufferedWriter[] tupleWriters = new BufferedWriter[blockNum];
+        for(int blockIndex = 0; blockIndex < blockNum; blockIndex++) {
+
+            //write attribute values
+            BufferedWriter bw = new BufferedWriter(new FileWriter(outputPath + File.separator + "block_"+(blockIndex+1)+".attributes"));
+            Set<Integer>[] attributeToValues = blockInfoList.get(blockIndex).getAttributeValues(dimension);
+            for(int dim = 0; dim < dimension; dim++) {
+                for(int value : attributeToValues[dim]) {
+                    bw.write(dim+","+value);
+                    bw.newLine();
+                }
+            }
+            bw.close();
+
+            tupleWriters[blockIndex] = new BufferedWriter(new FileWriter(outputPath + File.separator + "block_"+(blockIndex+1)+".tuples"));
+        }
+
+        for(DataOutputStream out : outs) {
+            out.writeByte(Protocol.WRITE);
+            out.writeInt(blockNum);
+            for(BlockInfo block : blockInfoList) {
+                writeMask(out, block);
+            }
+            out.flush();
+        }
+
+        //write blocks
+        int[] attVals = new int[dimension];
+        for(DataInputStream in : ins) {
+            for(int blockIndex = 0; blockIndex < blockNum; blockIndex++) {
+                BufferedWriter bw = tupleWriters[blockIndex];
+                while(true) {
+                    int value = Protocol.readTuple(in, attVals);
+                    if(value == -1) {
+                        break;
+                    }
+                    for(int dim = 0; dim < dimension; dim++) {
+                        bw.write(attVals[dim] + ",");
+                    }
+                    bw.write(""+value);
+                    bw.newLine();
+                }
+            }
+        }
+        for(BufferedWriter bw : tupleWriters) {
+            bw.close();
+        }
+    }
+
+    /**
+     * Remove Temp Files
+     */
+    private void remove(int blockNum){
+        for(int blockIndex = 0; blockIndex < blockNum; blockIndex++) {
+            new File(getBlockInfoFullPath(blockIndex)).delete();
+            new File(getOrderingFullPath(blockIndex)).delete();
+        }
+        for(int workerIndex = 0; workerIndex < processes.size(); workerIndex++) {
+            new File(getWorkPath(workerIndex) + ".log").delete();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package dcube.dist;
+
+import dcube.AttValMassTracker;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Messages between the driver (ProposedDist) and the workers (DistWorker)
+ * Every message is a command byte followed by its payload, and every command except SHUTDOWN is answered by the worker
+ * Sets of attribute values are sent as sorted lists, and attribute-value masses are sent as sparse (attribute value, mass) lists
+ * @author kijungs
+ */
+public class Protocol {
+
+    public static final byte LOAD = 1; // tuples of the partition, then the cardinalities -> attribute-value masses of R
+    public static final byte START_BLOCK = 2; // B is copied from R -> acknowledgement
+    public static final byte REMOVE = 3; // mode and attribute values removed from B -> changes of the attribute-value masses of B
+    public static final byte REMOVE_BLOCK = 4; // attribute values of a block -> mass of the block and attribute-value masses of R
+    public static final byte WRITE = 5; // attribute values of every block -> tuples of each block
+    public static final byte SHUTDOWN = 6;
+
+    /**
+     * send the given attribute values, which are sorted
+     */
+    public static void writeAttVals(DataOutputStream out, boolean[] attVals) throws IOException {
+        int size = 0;
+        for(boolean attVal : attVals) {
+            if(attVal) {
+                size++;
+            }
+        }
+        out.writeInt(attVals.length);
+        out.writeInt(size);
+        for(int attVal = 0; attVal < attVals.length; attVal++) {
+            if(attVals[attVal]) {
+                out.writeInt(attVal);
+            }
+        }
+    }
+
+    public static boolean[] readAttVals(DataInputStream in) throws IOException {
+        boolean[] attVals = new boolean[in.readInt()];
+        int size = in.readInt();
+        for(int i = 0; i < size; i++) {
+            attVals[in.readInt()] = true;
+        }
+        return attVals;
+    }
+
+    /**
+     * send the non-zero entries of the given attribute-value masses
+     */
+    public static void writeAttValMasses(DataOutputStream out, int[][] attValMasses) throws IOException {
+        for(int[] modeAttValMasses : attValMasses) {
+            int size = 0;
+            for(int mass : modeAttValMasses) {
+                if(mass != 0) {
+                    size++;
+                }
+            }
+            out.writeInt(size);
+            for(int attVal = 0; attVal < modeAttValMasses.length; attVal++) {
+                if(modeAttValMasses[attVal] != 0) {
+                    out.writeInt(attVal);
+                    out.writeInt(modeAttValMasses[attVal]);
+                }
+            }
+        }
+    }
+
+    /**
+     * send the non-zero changes of attribute-value masses recorded in the given tracker, in the format of writeAttValMasses(...),
+     * then clear the tracker
+     */
+    public static void writeAttValMassChanges(DataOutputStream out, AttValMassTracker tracker, int dimension) throws IOException {
+        for(int mode = 0; mode < dimension; mode++) {
+            int numOfChanged = tracker.numOfChanged(mode);
+            int size = 0;
+            for(int j = 0; j < numOfChanged; j++) {
+                if(tracker.change(mode, j) != 0) {
+                    size++;
+                }
+            }
+            out.writeInt(size);
+            for(int j = 0; j < numOfChanged; j++) {
+                int change = tracker.change(mode, j);
+                if(change != 0) {
+                    out.writeInt(tracker.changedAttVal(mode, j));
+                    out.writeInt(change);
+                }
+            }
+        }
+        tracker.clear();
+    }
+
+    /**
+     * add the received attribute-value masses to the given ones
+     */
+    public static void addAttValMasses(DataInputStream in, int[][] attValMasses) throws IOException {
+        for(int[] modeAttValMasses : attValMasses) {
+            int size = in.readInt();
+            for(int i = 0; i < size; i++) {
+                int attVal = in.readInt();
+                modeAttValMasses[attVal] += in.readInt();
+            }
+        }
+    }
+
+    /**
+     * send a tuple, the end of a list of tuples is marked by writeEndOfTuples
+     */
+    public static void writeTuple(DataOutputStream out, int[] attVals, int value) throws IOException {
+        out.writeBoolean(true);
+        for(int attVal : attVals) {
+            out.writeInt(attVal);
+        }
+        out.writeInt(value);
+    }
+
+    public static void writeEndOfTuples(DataOutputStream out) throws IOException {
+        out.writeBoolean(false);
+    }
+
+    /**
+     * receive a tuple
+     * @return measure attribute value of the tuple, -1 at the end of the tuples
+     */
+    public static int readTuple(DataInputStream in, int[] attVals) throws IOException {
+        if(!in.readBoolean()) {
+            return -1;
+        }
+        for(int mode = 0; mode < attVals.length; mode++) {
+            attVals[mode] = in.readInt();
+        }
+        return in.readInt();
+    }
+}
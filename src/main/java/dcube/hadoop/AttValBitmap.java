@@ -0,0 +1,135 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package dcube.hadoop;
+
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Set of attribute values in a mode, stored as a bitmap of 64-bit words
+ * Used to ship removal sets and block masks to mappers through the DistributedCache, where it is run-length encoded
+ * @author kijungs
+ */
+public class AttValBitmap {
+
+    private static final long ALL_ONES = -1L;
+
+    private final int length;
+    private final long[] words;
+
+    public AttValBitmap(int length) {
+        this.length = length;
+        this.words = new long[(length + 63) >>> 6];
+    }
+
+    public AttValBitmap(boolean[] attVals) {
+        this(attVals.length);
+        for(int attVal = 0; attVal < attVals.length; attVal++) {
+            if(attVals[attVal]) {
+                set(attVal);
+            }
+        }
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public void set(int attVal) {
+        words[attVal >>> 6] |= 1L << attVal;
+    }
+
+    public boolean get(int attVal) {
+        return (words[attVal >>> 6] & (1L << attVal)) != 0;
+    }
+
+    /**
+     * add all the attribute values in the given bitmap, whose length should be the same
+     */
+    public void or(AttValBitmap other) {
+        for(int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+    }
+
+    /**
+     * write the bitmap in a run-length encoding
+     * the words are written as segments, each of which is a run of words with all bits zero or all bits one followed by literal words
+     * a segment starts with (run length << 1 | 1 if the run has ones), and then the number of literal words, both variable-length encoded
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(length);
+        int i = 0;
+        while(i < words.length) {
+            long fill = words[i] == ALL_ONES ? ALL_ONES : 0L;
+            int runLength = 0;
+            while(i < words.length && words[i] == fill) {
+                runLength++;
+                i++;
+            }
+            int literalStart = i;
+            while(i < words.length && words[i] != 0L && words[i] != ALL_ONES) {
+                i++;
+            }
+            WritableUtils.writeVInt(out, runLength << 1 | (fill == ALL_ONES ? 1 : 0));
+            WritableUtils.writeVInt(out, i - literalStart);
+            for(int j = literalStart; j < i; j++) {
+                out.writeLong(words[j]);
+            }
+        }
+    }
+
+    public static AttValBitmap read(DataInput in) throws IOException {
+        AttValBitmap bitmap = new AttValBitmap(in.readInt());
+        long[] words = bitmap.words;
+        int i = 0;
+        while(i < words.length) {
+            int header = WritableUtils.readVInt(in);
+            int runLength = header >>> 1;
+            if((header & 1) == 1) {
+                Arrays.fill(words, i, i + runLength, ALL_ONES);
+            }
+            i += runLength;
+            int numOfLiterals = WritableUtils.readVInt(in);
+            for(int j = 0; j < numOfLiterals; j++) {
+                words[i++] = in.readLong();
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * write the attribute values of a block, which are given as a bitmap per mode
+     */
+    public static void writeMask(DataOutput out, AttValBitmap[] mask) throws IOException {
+        for(int mode = 0; mode < mask.length; mode++) {
+            mask[mode].write(out);
+        }
+    }
+
+    public static AttValBitmap[] readMask(DataInput in, int dimension) throws IOException {
+        AttValBitmap[] mask = new AttValBitmap[dimension];
+        for(int mode = 0; mode < dimension; mode++) {
+            mask[mode] = read(in);
+        }
+        return mask;
+    }
+}
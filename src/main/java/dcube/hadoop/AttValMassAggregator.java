@@ -0,0 +1,254 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package dcube.hadoop;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.MapContext;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * In-mapper aggregator of attribute-value masses
+ * A mode is aggregated in an array indexed by attribute values unless its cardinality is large compared to the input split,
+ * in which case it is aggregated in an open-addressing hash map whose entries are emitted whenever the map fills its memory budget
+ * If the cardinalities are unknown, arrays are grown on demand until they exceed DENSE_CARDINALITY_LIMIT and then switch to maps
+ * @author kijungs
+ */
+public class AttValMassAggregator {
+
+    private static final int DENSE_CARDINALITY_LIMIT = 1 << 20; // modes with smaller cardinalities always use arrays
+    private static final int SPARSE_RATIO = 4; // modes with cardinalities larger than this times the expected number of tuples use maps
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final int dimension;
+    private final int[][] denseMasses; // (n, i) -> mass of ith attribute value in the nth mode, null if the nth mode uses a map
+    private final IntIntMap[] sparseMasses; // n -> attribute value to mass in the nth mode, null if the nth mode uses an array
+    private final boolean growable;
+    private final int maxSparseCapacity;
+
+    private final MapContext<?, ?, ModeAttValWritable, IntWritable> context;
+    private final ModeAttValWritable keyWritable = new ModeAttValWritable();
+    private final IntWritable valueWritable = new IntWritable();
+
+    /**
+     * @param dimension dimension of the tensor
+     * @param cardinalities n -> cardinality of the nth mode, or null if unknown
+     * @param context context of the mapper, to which masses are emitted
+     */
+    public AttValMassAggregator(int dimension, int[] cardinalities, MapContext<?, ?, ModeAttValWritable, IntWritable> context) {
+        this.dimension = dimension;
+        this.context = context;
+        this.growable = cardinalities == null;
+        denseMasses = new int[dimension][];
+        sparseMasses = new IntIntMap[dimension];
+
+        //a quarter of the heap is shared by the maps, whose slots take 8 bytes
+        long budget = Runtime.getRuntime().maxMemory() / 4 / 8 / dimension;
+        maxSparseCapacity = (int) Math.max(INITIAL_CAPACITY, Long.highestOneBit(Math.min(budget, 1 << 30)));
+
+        long expectedTuples = estimateNumOfTuples(context);
+        for(int mode = 0; mode < dimension; mode++) {
+            if(growable) {
+                denseMasses[mode] = new int[INITIAL_CAPACITY];
+            }
+            else if(cardinalities[mode] <= DENSE_CARDINALITY_LIMIT || cardinalities[mode] <= SPARSE_RATIO * expectedTuples) {
+                denseMasses[mode] = new int[cardinalities[mode]];
+            }
+            else {
+                sparseMasses[mode] = new IntIntMap(INITIAL_CAPACITY, maxSparseCapacity);
+            }
+        }
+    }
+
+    /**
+     * estimate the number of tuples in the input split from its length in bytes
+     * the input is assumed to be compressed as the binary copy of the input tensor, whose bytes per tuple are measured by the bootstrap job
+     * and given by Parameter.PARAM_BYTES_PER_TUPLE, since the compressed size of a tuple is unknown otherwise
+     */
+    private static long estimateNumOfTuples(MapContext<?, ?, ?, ?> context) {
+        float bytesPerTuple = context.getConfiguration().getFloat(Parameter.PARAM_BYTES_PER_TUPLE, 0);
+        try {
+            if(bytesPerTuple > 0) {
+                return (long) (context.getInputSplit().getLength() / bytesPerTuple);
+            }
+        } catch (Exception e) {
+        }
+        return Long.MAX_VALUE / SPARSE_RATIO; //unknown, thus use arrays
+    }
+
+    /**
+     * add the value of a tuple to the masses of its attribute values
+     */
+    public void add(int[] attVals, int value) throws IOException, InterruptedException {
+        for(int mode = 0; mode < dimension; mode++) {
+            add(mode, attVals[mode], value);
+        }
+    }
+
+    public void add(int mode, int attVal, int mass) throws IOException, InterruptedException {
+        int[] dense = denseMasses[mode];
+        if(dense != null) {
+            if(attVal < dense.length) {
+                dense[attVal] += mass;
+                return;
+            }
+            if(growable && attVal < DENSE_CARDINALITY_LIMIT) {
+                dense = Arrays.copyOf(dense, Math.min(DENSE_CARDINALITY_LIMIT, Math.max(attVal + 1, dense.length * 2)));
+                denseMasses[mode] = dense;
+                dense[attVal] += mass;
+                return;
+            }
+            toSparse(mode);
+        }
+        IntIntMap sparse = sparseMasses[mode];
+        if(!sparse.add(attVal, mass)) {
+            flush(mode);
+            sparse.add(attVal, mass);
+        }
+    }
+
+    /**
+     * move the masses of the given mode from its array to a map
+     */
+    private void toSparse(int mode) throws IOException, InterruptedException {
+        int[] dense = denseMasses[mode];
+        IntIntMap sparse = new IntIntMap(INITIAL_CAPACITY, maxSparseCapacity);
+        sparseMasses[mode] = sparse;
+        denseMasses[mode] = null;
+        for(int attVal = 0; attVal < dense.length; attVal++) {
+            if(dense[attVal] != 0 && !sparse.add(attVal, dense[attVal])) {
+                flush(mode);
+                sparse.add(attVal, dense[attVal]);
+            }
+        }
+    }
+
+    /**
+     * emit the masses of every mode
+     */
+    public void flush() throws IOException, InterruptedException {
+        for(int mode = 0; mode < dimension; mode++) {
+            flush(mode);
+        }
+    }
+
+    private void flush(int mode) throws IOException, InterruptedException {
+        int[] dense = denseMasses[mode];
+        if(dense != null) {
+            for(int attVal = 0; attVal < dense.length; attVal++) {
+                if(dense[attVal] > 0) {
+                    emit(mode, attVal, dense[attVal]);
+                }
+            }
+            Arrays.fill(dense, 0);
+        }
+        else {
+            IntIntMap sparse = sparseMasses[mode];
+            int[] keys = sparse.keys;
+            int[] values = sparse.values;
+            for(int slot = 0; slot < keys.length; slot++) {
+                if(keys[slot] != IntIntMap.EMPTY && values[slot] > 0) {
+                    emit(mode, keys[slot], values[slot]);
+                }
+            }
+            sparse.clear();
+        }
+    }
+
+    private void emit(int mode, int attVal, int mass) throws IOException, InterruptedException {
+        keyWritable.set(mode, attVal);
+        valueWritable.set(mass);
+        context.write(keyWritable, valueWritable);
+    }
+
+    /**
+     * Open-addressing hash map from non-negative ints to ints with linear probing
+     */
+    private static class IntIntMap {
+
+        private static final int EMPTY = -1;
+
+        private int[] keys;
+        private int[] values;
+        private int size = 0;
+        private final int maxCapacity;
+
+        private IntIntMap(int capacity, int maxCapacity) {
+            this.maxCapacity = maxCapacity;
+            keys = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /**
+         * @return false if the map is full, in which case nothing is added
+         */
+        private boolean add(int key, int value) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while(keys[slot] != EMPTY) {
+                if(keys[slot] == key) {
+                    values[slot] += value;
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if((size + 1) * 2 > keys.length) { //keep the load factor at most 0.5
+                if(keys.length >= maxCapacity) {
+                    return false;
+                }
+                grow();
+                return add(key, value);
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            int mask = keys.length - 1;
+            for(int i = 0; i < oldKeys.length; i++) {
+                if(oldKeys[i] != EMPTY) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while(keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private void clear() {
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(values, 0);
+            size = 0;
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package dcube.hadoop;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/**
+ * Range partitioner of attribute values
+ * All attribute values are laid out mode by mode in one range, whose length is the sum of the cardinalities,
+ * and the range is split evenly so that each reducer receives about the same number of attribute values
+ * @author kijungs
+ */
+public class AttValMassPartitioner<V> extends Partitioner<ModeAttValWritable, V> implements Configurable {
+
+    private Configuration conf;
+    private long[] offsets; // n -> number of attribute values in the modes before the n-th mode
+    private long attValNum; // number of attribute values in all modes
+
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+        int dimension = conf.getInt(Parameter.PARAM_DIMENSION, 0);
+        offsets = new long[dimension];
+        attValNum = 0;
+        for(int mode = 0; mode < dimension; mode++) {
+            offsets[mode] = attValNum;
+            attValNum += conf.getInt(Parameter.PARAM_CARDINALITY + mode, 0);
+        }
+    }
+
+    public Configuration getConf() {
+        return conf;
+    }
+
+    @Override
+    public int getPartition(ModeAttValWritable key, V value, int numPartitions) {
+        long position = offsets[key.mode] + key.attVal;
+        return (int) Math.min(numPartitions - 1, position * numPartitions / Math.max(attValNum, 1));
+    }
+}
@@ -0,0 +1,99 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package dcube.hadoop;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Sparse run of attribute-value masses in one mode, which is the output of AttValMassMR.AttValMassReducer
+ * Attribute values are sorted and delta-encoded, and masses are variable-length encoded
+ * @author kijungs
+ */
+public class AttValMassesWritable implements Writable {
+
+    public static final int MAX_SIZE = 65536;
+
+    private int mode;
+    private int size = 0;
+    private int[] attVals = new int[MAX_SIZE];
+    private int[] masses = new int[MAX_SIZE];
+
+    public int getMode() {
+        return mode;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == MAX_SIZE;
+    }
+
+    /**
+     * start a new run in the given mode
+     */
+    public void clear(int mode) {
+        this.mode = mode;
+        this.size = 0;
+    }
+
+    /**
+     * add an attribute value, which should be greater than the previous one
+     */
+    public void add(int attVal, int mass) {
+        attVals[size] = attVal;
+        masses[size++] = mass;
+    }
+
+    /**
+     * copy the masses in this run into the given array
+     * @param attValMasses (n, i) -> mass of ith attribute value in the nth mode
+     */
+    public void copyTo(int[][] attValMasses) {
+        int[] modeAttValMasses = attValMasses[mode];
+        for(int i = 0; i < size; i++) {
+            modeAttValMasses[attVals[i]] = masses[i];
+        }
+    }
+
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, mode);
+        WritableUtils.writeVInt(out, size);
+        int prevAttVal = 0;
+        for(int i = 0; i < size; i++) {
+            WritableUtils.writeVInt(out, attVals[i] - prevAttVal);
+            WritableUtils.writeVInt(out, masses[i]);
+            prevAttVal = attVals[i];
+        }
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        mode = WritableUtils.readVInt(in);
+        size = WritableUtils.readVInt(in);
+        int attVal = 0;
+        for(int i = 0; i < size; i++) {
+            attVal += WritableUtils.readVInt(in);
+            attVals[i] = attVal;
+            masses[i] = WritableUtils.readVInt(in);
+        }
+    }
+}
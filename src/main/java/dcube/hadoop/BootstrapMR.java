@@ -0,0 +1,140 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package dcube.hadoop;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * MR job for converting the input tensor into the binary format (TupleWritable)
+ * and computing the cardinalities and the attribute-value masses in one pass
+ * Since the cardinalities are unknown, the mappers aggregate masses without them and the default hash partitioner is used
+ * The converted tensor is written to the named output TENSOR, the cardinalities to the named output CARDINALITIES,
+ * and the masses are written as in AttValMassMR.AttValMassReducer
+ * @author kijungs
+ */
+public class BootstrapMR {
+
+    public static final String TENSOR = "tensor";
+    public static final String CARDINALITIES = "cardinalities";
+    public static final int MAX_ATT_VAL_KEY = Integer.MAX_VALUE; // key of the maximum attribute value in a mode
+
+    public enum Counter {
+        NUM_OF_TUPLES // number of tuples in the input tensor
+    }
+
+    public static class BootstrapMapper
+            extends Mapper<Object, Text, ModeAttValWritable, IntWritable> {
+
+        private int dimension = 0;
+        private TupleWritable tuple;
+        private AttValMassAggregator aggregator;
+        private int[] maxAttVals = null; // n -> maximum attribute value in the nth mode
+        private long numOfTuples = 0;
+        private ModeAttValWritable keyWritable = new ModeAttValWritable();
+        private IntWritable valueWritable = new IntWritable();
+        private MultipleOutputs<ModeAttValWritable, IntWritable> multipleOutputs;
+
+        @Override
+        public void setup(Context context
+        ) throws IOException, InterruptedException {
+            dimension = context.getConfiguration().getInt(Parameter.PARAM_DIMENSION, 0);
+            tuple = new TupleWritable(dimension);
+            aggregator = new AttValMassAggregator(dimension, null, context);
+            maxAttVals = new int[dimension];
+            Arrays.fill(maxAttVals, -1);
+            multipleOutputs = new MultipleOutputs<ModeAttValWritable, IntWritable>(context);
+        }
+
+        @Override
+        public void map(Object key, Text value, Context context
+        ) throws IOException, InterruptedException {
+            if(!tuple.parse(value.toString(), dimension)) {
+                return;
+            }
+            multipleOutputs.write(TENSOR, NullWritable.get(), tuple, TENSOR + "/part");
+            numOfTuples++;
+            aggregator.add(tuple.attVals, tuple.value);
+            for(int mode = 0; mode < dimension; mode++) {
+                maxAttVals[mode] = Math.max(maxAttVals[mode], tuple.attVals[mode]);
+            }
+        }
+
+        @Override
+        public void cleanup(Context context) throws IOException, InterruptedException {
+            multipleOutputs.close();
+            context.getCounter(Counter.NUM_OF_TUPLES).increment(numOfTuples);
+            aggregator.flush();
+            for(int mode = 0; mode < dimension; mode++) {
+                if(maxAttVals[mode] < 0) {
+                    continue;
+                }
+                keyWritable.set(mode, MAX_ATT_VAL_KEY);
+                valueWritable.set(maxAttVals[mode]);
+                context.write(keyWritable, valueWritable);
+            }
+        }
+    }
+
+    /**
+     * Reducer writing the cardinality of each mode, which is the maximum attribute value plus one, to the named output CARDINALITIES
+     * The other keys are reduced as in AttValMassMR.AttValMassReducer
+     */
+    public static class BootstrapReducer extends AttValMassMR.AttValMassReducer {
+
+        private IntWritable modeWritable = new IntWritable();
+        private IntWritable cardinalityWritable = new IntWritable();
+        private MultipleOutputs<NullWritable, AttValMassesWritable> multipleOutputs;
+
+        @Override
+        public void setup(Context context
+        ) throws IOException, InterruptedException {
+            super.setup(context);
+            multipleOutputs = new MultipleOutputs<NullWritable, AttValMassesWritable>(context);
+        }
+
+        @Override
+        public void reduce(ModeAttValWritable key, Iterable<IntWritable> values,
+                           Context context
+        ) throws IOException, InterruptedException {
+            if(key.attVal != MAX_ATT_VAL_KEY) {
+                super.reduce(key, values, context);
+                return;
+            }
+            int maxAttVal = 0;
+            for (IntWritable value : values) {
+                maxAttVal = Math.max(value.get(), maxAttVal);
+            }
+            modeWritable.set(key.mode);
+            cardinalityWritable.set(maxAttVal + 1);
+            multipleOutputs.write(CARDINALITIES, modeWritable, cardinalityWritable);
+        }
+
+        @Override
+        public void cleanup(Context context) throws IOException, InterruptedException {
+            super.cleanup(context);
+            multipleOutputs.close();
+        }
+    }
+
+}
@@ -20,67 +20,71 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 
 import java.io.*;
 
 /**
- * MR job for computing BOri
+ * MR job for computing BOri of every block in one pass over the input tensor
+ * The masks of all the blocks are in the DistributedCache,
+ * and each line of the input is written as it is to the named output TUPLES under the directory named after the mask of every block containing it
  * @author kijungs
  */
 public class ComputeBOriMR {
 
+    public static final String TUPLES = "tuples";
+
     public static class ComputeBOriMapper extends Mapper<Object, Text, NullWritable, Text> {
 
         private int dimension = 0;
-        private boolean[][] modeToAttValsIncluded;
+        private AttValBitmap[][] masks; // (k, n) -> attribute values of the k-th block in the nth mode
+        private String[] baseOutputPaths; // k -> output path of the k-th block, which is named after its mask
+        private TupleWritable tuple;
+        private MultipleOutputs<NullWritable, Text> multipleOutputs;
 
         @Override
         public void setup(Context context
         ) throws IOException, InterruptedException {
             dimension = context.getConfiguration().getInt(Parameter.PARAM_DIMENSION, 0);
-            modeToAttValsIncluded = new boolean[dimension][];
-            for(int mode = 0; mode < dimension; mode++) {
-                int length = context.getConfiguration().getInt(Parameter.PARAM_CARDINALITY + mode, 0);
-                modeToAttValsIncluded[mode] = new boolean[length];
-            }
+            tuple = new TupleWritable(dimension);
             Path[] localPaths = DistributedCache.getLocalCacheFiles(context.getConfiguration());
-            if(localPaths != null && localPaths.length > 0) {
-                for(Path path : localPaths) {
-                    ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(path.toString()), 8388608));
-                    try {
-                        while (true) {
-                            byte mode = in.readByte();
-                            modeToAttValsIncluded[mode][in.readInt()] = true;
-                        }
-                    } catch(EOFException e) {
-                    }
-                    in.close();
-                }
+            masks = new AttValBitmap[localPaths.length][];
+            baseOutputPaths = new String[localPaths.length];
+            for(int i = 0; i < localPaths.length; i++) {
+                ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(localPaths[i].toString())));
+                masks[i] = AttValBitmap.readMask(in, dimension);
+                in.close();
+                baseOutputPaths[i] = localPaths[i].getName() + "/part";
             }
+            multipleOutputs = new MultipleOutputs<NullWritable, Text>(context);
         }
 
         @Override
         public void map(Object key, Text value, Context context
         ) throws IOException, InterruptedException {
-            String[] tokens = value.toString().split(",");
-
-            boolean included = true;
-            for(int mode = 0; mode < dimension; mode++) {
-                if (!modeToAttValsIncluded[mode][Integer.valueOf(tokens[mode])]) {
-                    included = false;
-                    break;
-                }
+            if(!tuple.parse(value.toString(), dimension)) {
+                return;
             }
-
-            if(included) {
-                context.write(NullWritable.get(), value);
+            int[] attVals = tuple.attVals;
+            for(int i = 0; i < masks.length; i++) {
+                AttValBitmap[] mask = masks[i];
+                boolean included = true;
+                for(int mode = 0; mode < dimension; mode++) {
+                    if (!mask[mode].get(attVals[mode])) {
+                        included = false;
+                        break;
+                    }
+                }
+                if(included) {
+                    multipleOutputs.write(TUPLES, NullWritable.get(), value, baseOutputPaths[i]);
+                }
             }
         }
-    }
 
-    public static class ComputeBOriReducer extends Reducer<NullWritable, Text, NullWritable, Text> {
-        //do nothing
+        @Override
+        public void cleanup(Context context) throws IOException, InterruptedException {
+            multipleOutputs.close();
+        }
     }
 
 }
@@ -27,62 +27,40 @@ import org.apache.hadoop.mapreduce.Reducer;
 import java.io.*;
 
 /**
- * MR job for computing the mass of a found block
+ * MR job for computing the mass of a found block, which reads the binary copy of the input tensor
  * @author kijungs
  */
 public class EvaluateMR {
 
-    public static class EvaluateMapper extends Mapper<Object, Text, IntWritable, LongWritable> {
+    public static class EvaluateMapper extends Mapper<NullWritable, TupleWritable, IntWritable, LongWritable> {
 
         private int dimension = 0;
-        private boolean[][] modeToAttValsIncluded;
+        private AttValBitmap[] mask; // n -> attribute values of the block in the nth mode
         private long mass = 0;
 
         @Override
         public void setup(Context context
         ) throws IOException, InterruptedException {
             dimension = context.getConfiguration().getInt(Parameter.PARAM_DIMENSION, 0);
-            modeToAttValsIncluded = new boolean[dimension][];
-            for(int mode = 0; mode < dimension; mode++) {
-                int length = context.getConfiguration().getInt(Parameter.PARAM_CARDINALITY + mode, 0);
-                modeToAttValsIncluded[mode] = new boolean[length];
-            }
             Path[] localPaths = DistributedCache.getLocalCacheFiles(context.getConfiguration());
-            if(localPaths != null && localPaths.length > 0) {
-                for(Path path : localPaths) {
-                    ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(path.toString()), 8388608));
-                    try {
-                        while (true) {
-                            byte mode = in.readByte();
-                            modeToAttValsIncluded[mode][in.readInt()] = true;
-                        }
-                    } catch(EOFException e) {
-                    }
-                    in.close();
-                }
-            }
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(localPaths[0].toString())));
+            mask = AttValBitmap.readMask(in, dimension);
+            in.close();
         }
 
         @Override
-        public void map(Object key, Text value, Context context
+        public void map(NullWritable key, TupleWritable value, Context context
         ) throws IOException, InterruptedException {
-            String[] tokens = value.toString().split(",");
-
-            boolean remove = true;
             for(int mode = 0; mode < dimension; mode++) {
-                if (!modeToAttValsIncluded[mode][Integer.valueOf(tokens[mode])]) {
-                    remove = false;
-                    break;
+                if (!mask[mode].get(value.attVals[mode])) {
+                    return;
                 }
             }
-
-            if(remove) {
-                mass += Integer.valueOf(tokens[dimension]);
-            }
+            mass += value.value;
         }
 
         @Override
-        public void cleanup(Mapper<Object, Text, IntWritable, LongWritable>.Context context
+        public void cleanup(Context context
         ) throws IOException, InterruptedException {
             LongWritable longWritable = new LongWritable(mass);
             context.write(new IntWritable(0), longWritable);
@@ -0,0 +1,136 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package dcube.hadoop;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import java.io.*;
+
+/**
+ * MR job for computing the mass of a found block, removing the block from R,
+ * and computing the attribute-value masses of the new R in one job with two inputs
+ * Only the mask of the found block is in the DistributedCache
+ * BlockMassMapper reads the binary copy of the input tensor and sums the mass of the block in the counter MASS_OF_BLOCK
+ * RemoveRMapper reads the tuples of R, sums the mass of the removed tuples in the counter MASS_REMOVED_FROM_R,
+ * writes the new R to the named output SURVIVORS, and its masses are reduced by AttValMassMR.AttValMassReducer
+ * @author kijungs
+ */
+public class EvaluateRemoveRMR {
+
+    public static final String SURVIVORS = "survivors";
+    public static final String MASK = "block_";
+
+    public enum Counter {
+        MASS_OF_BLOCK, // mass of the block in the input tensor
+        MASS_REMOVED_FROM_R // mass of the block in R
+    }
+
+    /**
+     * read the mask in the DistributedCache
+     * @return n -> attribute values of the block in the nth mode
+     */
+    private static AttValBitmap[] readMask(Configuration conf, int dimension) throws IOException {
+        Path[] localPaths = DistributedCache.getLocalCacheFiles(conf);
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(localPaths[0].toString())));
+        AttValBitmap[] mask = AttValBitmap.readMask(in, dimension);
+        in.close();
+        return mask;
+    }
+
+    private static boolean contains(AttValBitmap[] mask, int[] attVals) {
+        for(int mode = 0; mode < attVals.length; mode++) {
+            if(!mask[mode].get(attVals[mode])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static class BlockMassMapper
+            extends Mapper<NullWritable, TupleWritable, ModeAttValWritable, IntWritable> {
+
+        private AttValBitmap[] mask; // n -> attribute values of the block in the nth mode
+        private long massOfBlock = 0;
+
+        @Override
+        public void setup(Context context
+        ) throws IOException, InterruptedException {
+            int dimension = context.getConfiguration().getInt(Parameter.PARAM_DIMENSION, 0);
+            mask = readMask(context.getConfiguration(), dimension);
+        }
+
+        @Override
+        public void map(NullWritable key, TupleWritable value, Context context
+        ) throws IOException, InterruptedException {
+            if(contains(mask, value.attVals)) {
+                massOfBlock += value.value;
+            }
+        }
+
+        @Override
+        public void cleanup(Context context) throws IOException, InterruptedException {
+            context.getCounter(Counter.MASS_OF_BLOCK).increment(massOfBlock);
+        }
+    }
+
+    public static class RemoveRMapper
+            extends Mapper<NullWritable, TupleWritable, ModeAttValWritable, IntWritable> {
+
+        private AttValBitmap[] mask; // n -> attribute values of the block in the nth mode
+        private AttValMassAggregator aggregator;
+        private long massRemoved = 0;
+        private MultipleOutputs<ModeAttValWritable, IntWritable> multipleOutputs;
+
+        @Override
+        public void setup(Context context
+        ) throws IOException, InterruptedException {
+            int dimension = context.getConfiguration().getInt(Parameter.PARAM_DIMENSION, 0);
+            int[] cardinalities = new int[dimension];
+            for(int mode = 0; mode < dimension; mode++) {
+                cardinalities[mode] = context.getConfiguration().getInt(Parameter.PARAM_CARDINALITY + mode, 0);
+            }
+            aggregator = new AttValMassAggregator(dimension, cardinalities, context);
+            mask = readMask(context.getConfiguration(), dimension);
+            multipleOutputs = new MultipleOutputs<ModeAttValWritable, IntWritable>(context);
+        }
+
+        @Override
+        public void map(NullWritable key, TupleWritable value, Context context
+        ) throws IOException, InterruptedException {
+            if(contains(mask, value.attVals)) {
+                massRemoved += value.value;
+                return;
+            }
+            multipleOutputs.write(SURVIVORS, NullWritable.get(), value, SURVIVORS + "/part");
+            aggregator.add(value.attVals, value.value);
+        }
+
+        @Override
+        public void cleanup(Context context) throws IOException, InterruptedException {
+            multipleOutputs.close();
+            context.getCounter(Counter.MASS_REMOVED_FROM_R).increment(massRemoved);
+            aggregator.flush();
+        }
+    }
+
+}
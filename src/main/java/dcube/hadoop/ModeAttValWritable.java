@@ -0,0 +1,102 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package dcube.hadoop;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Key of an attribute value, which is a pair of a mode and an attribute value in the mode
+ * Keys are sorted by modes and then by attribute values, and compared without deserialization
+ * @author kijungs
+ */
+public class ModeAttValWritable implements WritableComparable<ModeAttValWritable> {
+
+    public int mode;
+    public int attVal;
+
+    public ModeAttValWritable() {
+    }
+
+    public ModeAttValWritable(int mode, int attVal) {
+        set(mode, attVal);
+    }
+
+    public void set(int mode, int attVal) {
+        this.mode = mode;
+        this.attVal = attVal;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(mode);
+        out.writeInt(attVal);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        mode = in.readInt();
+        attVal = in.readInt();
+    }
+
+    public int compareTo(ModeAttValWritable o) {
+        if(mode != o.mode) {
+            return mode < o.mode ? -1 : 1;
+        }
+        return attVal < o.attVal ? -1 : (attVal == o.attVal ? 0 : 1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(!(o instanceof ModeAttValWritable)) {
+            return false;
+        }
+        ModeAttValWritable other = (ModeAttValWritable) o;
+        return mode == other.mode && attVal == other.attVal;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * mode + attVal;
+    }
+
+    @Override
+    public String toString() {
+        return mode + "," + attVal;
+    }
+
+    /**
+     * compares serialized keys, modes and attribute values are non-negative thus their big-endian bytes sort as numbers
+     */
+    public static class Comparator extends WritableComparator {
+
+        public Comparator() {
+            super(ModeAttValWritable.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            return compareBytes(b1, s1, l1, b2, s2, l2);
+        }
+    }
+
+    static {
+        WritableComparator.define(ModeAttValWritable.class, new Comparator());
+    }
+}
@@ -23,7 +23,14 @@ public class Parameter {
 
     public static final String PARAM_DIMENSION = "PARAM_DIMENSION";
     public static final String PARAM_CARDINALITY = "PARAM_CARDINALITY";
-    public static final String PARAM_MODE_TO_REMOVE = "PARAM_MODE_TO_REMOVE";
     public static final String PARAM_REDUCER_NUM = "PARAM_REDUCER_NUM";
+    public static final String PARAM_MATERIALIZE = "PARAM_MATERIALIZE";
+    public static final String PARAM_BYTES_PER_TUPLE = "PARAM_BYTES_PER_TUPLE";
+    public static final String PARAM_CONFIG_NUM = "PARAM_CONFIG_NUM";
+    public static final String PARAM_CONFIG_ACTIVE = "PARAM_CONFIG_ACTIVE";
+    public static final String PARAM_CONFIG_EVALUATE = "PARAM_CONFIG_EVALUATE";
+    public static final String PARAM_CONFIG_INPUT = "PARAM_CONFIG_INPUT";
+    public static final String PARAM_CONFIG_MATERIALIZE = "PARAM_CONFIG_MATERIALIZE";
+    public static final String PARAM_ORIGINAL_INPUT = "PARAM_ORIGINAL_INPUT";
 
 }
@@ -24,16 +24,27 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.DefaultCodec;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 
 import java.io.*;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * D-Cube Hadoop Version
@@ -49,6 +60,7 @@ public class ProposedHadoop {
      * @throws IOException
      */
     public static void main(String[] args) throws Exception {
+        final long launchTime = System.currentTimeMillis();
         if (args.length < 5) {
             printError();
             System.exit(-1);
@@ -105,6 +117,35 @@ public class ProposedHadoop {
 
         String logPath = args[8];
         System.out.println("log path (local): " + logPath);
+
+        long hybridThreshold = 0;
+        boolean prune = false;
+        double deadline = 0;
+        double maxTheta = 0;
+        for(int i = 9; i < args.length; i++) {
+            if(args[i].compareToIgnoreCase("--hybrid") == 0 && i + 1 < args.length) {
+                hybridThreshold = Long.valueOf(args[++i]) * 1024 * 1024;
+            } else if(args[i].compareToIgnoreCase("--prune") == 0) {
+                prune = true;
+            } else if(args[i].compareToIgnoreCase("--deadline") == 0 && i + 1 < args.length) {
+                deadline = Double.valueOf(args[++i]);
+            } else if(args[i].compareToIgnoreCase("--adaptive") == 0 && i + 1 < args.length) {
+                maxTheta = Double.valueOf(args[++i]);
+            } else {
+                System.err.println("Unknown Option: " + args[i]);
+                printError();
+                System.exit(-1);
+            }
+        }
+        System.out.println("hybrid_threshold (MB): " + hybridThreshold / 1024 / 1024);
+        System.out.println("prune: " + prune);
+        System.out.println("deadline (seconds): " + deadline);
+        System.out.println("adaptive_max_threshold: " + maxTheta);
+        if(maxTheta > 0 && maxTheta < theta) {
+            System.err.println("Max_mass_threshold should be greater than or equal to mass_threshold");
+            printError();
+            System.exit(-1);
+        }
         File dir = new File(logPath);
 
         try{
@@ -128,45 +169,79 @@ public class ProposedHadoop {
         System.out.println("num_of_blocks: " + blockNum);
         System.out.println("reducerNum: " + reducerNum);
         System.out.println("log path (local): " + logPath);
+        System.out.println("hybrid_threshold (MB): " + hybridThreshold / 1024 / 1024);
+        System.out.println("prune: " + prune);
+        System.out.println("deadline (seconds): " + deadline);
+        System.out.println("adaptive_max_threshold: " + maxTheta);
 
         System.out.println();
         System.out.println("running the algorithm...");
         ProposedHadoop proposed = new ProposedHadoop(input, output, logPath, dimension, reducerNum);
+        proposed.setHybridThreshold(hybridThreshold);
+        proposed.setPrune(prune);
+        proposed.setAdaptiveTheta(maxTheta);
+        if(deadline > 0) {
+            proposed.setDeadline(launchTime + (long) (deadline * 1000));
+        }
         proposed.run(blockNum, densityMeasure, policy, theta);
 
     }
 
     private static void printError() {
-        System.err.println("Usage: run_hadoop.sh input_path output_path dimension density_measure policy mass_threshold num_of_blocks num_of_reducers log_path");
+        System.err.println("Usage: run_hadoop.sh input_path output_path dimension density_measure policy mass_threshold num_of_blocks num_of_reducers log_path [--hybrid size_in_MB] [--prune] [--deadline time_in_seconds] [--adaptive max_mass_threshold]");
         System.err.println("Density_measure should be one of [ari, geo, susp]");
         System.err.println("Policy should be one of [density, cardinality]");
         System.err.println("Mass_threshold should be a number greater than or equal to one");
+        System.err.println("--hybrid finishes each block in memory once the block is smaller than the given size");
+        System.err.println("--prune stops peeling once the remaining block cannot get denser than the best one (ari and geo only)");
+        System.err.println("--deadline stops the run at the given number of seconds after the start, and the best block found so far is returned as a partial block");
+        System.err.println("--adaptive starts each block with max_mass_threshold, which is decreased towards mass_threshold once a pass with it would result in a lower density than with mass_threshold");
     }
 
     protected enum TensorType{
         OriginalR, CurrentR
     }
 
-    private String originalPath;
-    private String outputPath;
-    private String logPath;
+    protected String originalPath;
+    protected String outputPath;
+    protected String logPath;
+    protected String originalRPath; // binary copy of the input tensor, which is read by the jobs scanning the original tensor
     private String defaultCurrentRPath;
     private String defaultBlockBPath;
-    private String tempPath;
-    private String distributedCachePath;
+    protected String tempPath;
+    private String pendingRemovalPath;
+    protected String blockMaskPath;
 
     //changeable
     public String currentRPath;
     public String blockBPath;
 
-    private int dimension;
-    private int reducerNum;
-    private int[] cardinalities;
-    private int[][] attValMasses;
+    protected int dimension;
+    protected int reducerNum;
+    protected int[] cardinalities;
+    protected int[][] attValMasses;
     private long massR;
-    private long massRori;
+    protected long massRori;
+
+    //B is rewritten only when this fraction of its mass has been removed since it was last written
+    protected static final double MATERIALIZATION_THRESHOLD = 0.5;
+    private int numOfPendingRemovals; // number of removal sets not yet applied to the files of B
+    private long massB; // mass of B after the pending removals
+    private long massOfMaterializedB; // mass of B as last written
+    private AttValBitmap[] pendingAttValsToRemove; // n -> union of the pending removal sets in the nth mode, null if none
+
+    //once the size of B drops below this number of bytes, B is loaded into memory and peeled there (0 to disable)
+    protected long hybridThreshold = 0;
+    private Tensor inMemoryB = null;
+
+    protected boolean prune = false; // stop peeling once no further block can be denser than the best one so far
+    protected long deadline = Long.MAX_VALUE; // time in milliseconds when peeling stops
+    private boolean stoppedByDeadline = false; // true if the peeling of the last block was stopped by the deadline
+    protected double maxTheta = 0; // initial mass threshold of the adaptive schedule, 0 for the fixed schedule
+    private int passesOfLastBlock = 0; // number of passes over B to find the last block
+    private double maxThetaOfLastBlock = 0; // largest mass threshold used to find the last block, which determines the accuracy guarantee
 
-    private Configuration conf;
+    protected Configuration conf;
 
     public void run(final int blockNum, DensityMeasure densityMeasure, final int runningMode, final double theta) throws Exception {
 
@@ -187,23 +262,48 @@ public class ProposedHadoop {
         measure.initialize(getDimension(), getCardinalities(), getMass(TensorType.OriginalR));
 
         final List<BlockInfo> listOfBlocks = new LinkedList();
+        final List<Integer> partialBlocks = new LinkedList<Integer>();
         double bestAccuracy = 0;
+        int totalPasses = 0;
+        double maxThetaUsed = theta;
         for(int i = 0; i < blockNum; i++) {
             BlockInfo block = findOneBlock(i, densityMeasure, runningMode, theta);
-            bestAccuracy = Math.max(bestAccuracy, removeAndEvaluateBlock(i, block, measure, i == blockNum -1));
+            //R is not updated if no more block is found
+            boolean isLastBlock = i == blockNum - 1 || System.currentTimeMillis() > deadline;
+            bestAccuracy = Math.max(bestAccuracy, removeAndEvaluateBlock(i, block, measure, isLastBlock));
+            System.out.println("Passes: " + passesOfLastBlock);
+            System.out.println("Max mass threshold: " + maxThetaOfLastBlock);
+            totalPasses += passesOfLastBlock;
+            maxThetaUsed = Math.max(maxThetaUsed, maxThetaOfLastBlock);
             listOfBlocks.add(block);
+            if(stoppedByDeadline) {
+                System.out.println("Partial block: " + (i+1));
+                partialBlocks.add(i+1);
+            }
+            if(isLastBlock) {
+                if(i < blockNum - 1) {
+                    System.out.println("Deadline reached, " + (i+1) + " blocks were found");
+                }
+                break;
+            }
         }
 
+        System.out.println("Total passes: " + totalPasses);
+        System.out.println("Max mass threshold: " + maxThetaUsed);
         System.out.println("Running time: " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds");
 
 
         start = System.currentTimeMillis();
         System.out.println("Writing outputs...");
         writeOutput(outputPath, listOfBlocks);
+        if(!partialBlocks.isEmpty()) {
+            writePartialBlocks(outputPath + "/" + Proposed.partialBlocksName, partialBlocks);
+        }
         System.out.println("Outputs were written. " + (System.currentTimeMillis() - start + 0.0) / 1000 + " seconds was taken.");
 
         System.out.println("Removing temporary files...");
         remove(blockNum);
+        removeTempPaths();
         System.out.println("Temporary files were removed.");
 
         return;
@@ -226,7 +326,30 @@ public class ProposedHadoop {
         }
     }
 
-    private String getTempLocalFilePath() {
+    /**
+     * @return temporary paths in HDFS, which are removed at the end of a run
+     */
+    protected List<String> getTempPaths() {
+        List<String> tempPaths = new LinkedList<String>();
+        tempPaths.add(originalRPath);
+        tempPaths.add(defaultCurrentRPath);
+        tempPaths.add(defaultBlockBPath);
+        tempPaths.add(tempPath);
+        tempPaths.add(pendingRemovalPath);
+        tempPaths.add(blockMaskPath);
+        return tempPaths;
+    }
+
+    protected void removeTempPaths() throws IOException {
+        FileSystem fs = FileSystem.get(conf);
+        for(String path : getTempPaths()) {
+            if(fs.exists(new Path(path))) {
+                fs.delete(new Path(path), true);
+            }
+        }
+    }
+
+    protected String getTempLocalFilePath() {
         while (true) {
             String name = "DECUBE_" + new Random().nextInt();
             if(!new File(name).exists())
@@ -242,16 +365,9 @@ public class ProposedHadoop {
 
         final int dimension = getDimension();
         final int[] cardinalities = getCardinalities();
-        long mass =  getMass(TensorType.CurrentR);
 
-        // n -> list of attribute values in the nth mode
-        final int[][] modeToAttVals = createModeToAttVals(dimension, cardinalities);
         // (n, i) -> mass of ith attribute value in the nth mode
         int[][] modeToAttValToMass = getAttValMasses();
-        // n -> num of alive attribute values in the nth mode
-        int[] modeToAliveValuesNum = cardinalities.clone();
-        // n -> num of deleted attributes in the nth mode
-        int[] modeToRemovedValuesNum = new int[dimension];
 
         final int sumOfCardinalities = sumOfCarndinalities(dimension, cardinalities);
         IDensityMeasure measure = null;
@@ -268,90 +384,37 @@ public class ProposedHadoop {
         copyBlock();
 
         BlockIterInfo iterInfo = new BlockIterInfo(cardinalities, BlockIterInfo.properBufferUsage(sumOfCardinalities), getOrderingFullPath(blockIndex));
-        int maxIters = 0;
-        double maxScoreAmongIters = measure.initialize(getDimension(), getCardinalities(), getMass(TensorType.CurrentR));
-
-
-        int i = 0;
-        while (i < sumOfCardinalities) {
-            int maxMode = 0;
-            double maxScoreAmongModes = -Double.MAX_VALUE;
-            for (int mode = 0; mode < dimension; mode++) {
-                if(modeToAliveValuesNum[mode] > 0) {
-                    if(policy == Proposed.POLICY_MAX_CARNDILITY) {
-                        int tempScore = modeToAliveValuesNum[mode];
-                        if (tempScore >= maxScoreAmongModes) {
-                            maxMode = mode;
-                            maxScoreAmongModes = tempScore;
-                        }
-                    }
-                    else if (policy == Proposed.POLICY_MAX_DENSITY) {
-                        double threshold = mass * theta / modeToAliveValuesNum[mode];
-                        int numToRemove = 0;
-                        long removedMassSum = 0;
-                        int[] attValToMass = modeToAttValToMass[mode];
-                        int[] attVals = modeToAttVals[mode];
-                        for (int j = modeToRemovedValuesNum[mode]; j < cardinalities[mode]; j++) {
-                            int attVal = attVals[j];
-                            if (attValToMass[attVal] <= threshold) {
-                                numToRemove++;
-                                removedMassSum += attValToMass[attVal];
-                            }
-                        }
-                        if (numToRemove >= 1) {
-                            double tempScore = measure.ifRemoved(mode, numToRemove, removedMassSum);
-                            if (tempScore >= maxScoreAmongModes) {
-                                maxMode = mode;
-                                maxScoreAmongModes = tempScore;
-                            }
-                        } else {
-                            System.out.println("Sanity Check!");
-                        }
-                    }
-                    else {
-                        System.out.println("ERROR"); //unknown mrunning mode
-                    }
-                }
+        double score = measure.initialize(getDimension(), getCardinalities(), getMass(TensorType.CurrentR));
+        Proposed.Peeling peeling = new Proposed.Peeling(dimension, cardinalities, modeToAttValToMass, getMass(TensorType.CurrentR), measure, score, iterInfo, policy, theta, maxTheta);
+
+        stoppedByDeadline = false;
+        int passes = 0;
+        while (!peeling.isDone()) {
+            if(peeling.stopAtDeadline(deadline)) {
+                stoppedByDeadline = true;
+                break;
             }
-
-            double threshold = mass * theta / modeToAliveValuesNum[maxMode];
-            final int[] attValToMass = modeToAttValToMass[maxMode];
-            final boolean[] attValsToRemove = new boolean[cardinalities[maxMode]];
-
-            sort(modeToAttVals[maxMode], modeToAttValToMass[maxMode], modeToRemovedValuesNum[maxMode], cardinalities[maxMode]-1);
-
-            int[] attVals = modeToAttVals[maxMode];
-            for (int j = modeToRemovedValuesNum[maxMode]; j < cardinalities[maxMode]; j++) {
-                int attVal = attVals[j];
-                if (attValToMass[attVal] <= threshold) {
-                    mass -= attValToMass[attVal];
-                    double score = measure.remove(maxMode, attValToMass[attVal]);
-                    if (score > maxScoreAmongIters) {
-                        maxScoreAmongIters = score;
-                        maxIters = i + 1;
-                    }
-                    modeToRemovedValuesNum[maxMode]++;
-                    modeToAliveValuesNum[maxMode]--;
-                    iterInfo.addIterInfo((byte)maxMode, attVal);
-                    i++;
-                    attValsToRemove[attVal] = true;
-                }
-                else {
-                    break;
-                }
+            if(prune && peeling.stopIfPruned()) {
+                break;
             }
-
+            int maxMode = peeling.selectMode();
+            boolean[] attValsToRemove = peeling.removeFromMode(maxMode);
             removeAndUpdateAttValMasses(maxMode, attValsToRemove, modeToAttValToMass);
+            passes++;
         }
 
+        passesOfLastBlock = passes;
+        maxThetaOfLastBlock = peeling.getMaxThetaOfPass();
+
         //free attValMasses info
         for(int mode = 0; mode < dimension; mode++) {
             attValMasses[mode] = new int[0];
         }
-        return iterInfo.returnBlock(maxIters, getBlockInfoFullPath(blockIndex));
+        inMemoryB = null;
+        return peeling.returnBlock(getBlockInfoFullPath(blockIndex));
     }
 
-    private static int sumOfCarndinalities(int order, int[] modeLengths){
+    protected static int sumOfCarndinalities(int order, int[] modeLengths){
         int sumOfModeLengths = 0;
         for(int mode = 0; mode < order; mode++) {
             sumOfModeLengths += modeLengths[mode];
@@ -362,7 +425,7 @@ public class ProposedHadoop {
     /**
      * @return
      */
-    private static int[][] createModeToAttVals(final int order, int[] modeLengths) {
+    protected static int[][] createModeToAttVals(final int order, int[] modeLengths) {
         int[][] modeToAttVals = new int[order][];
         for(int mode = 0; mode < order; mode++) {
             int[] attVals = new int[modeLengths[mode]];
@@ -424,25 +487,58 @@ public class ProposedHadoop {
         attValMasses = new int[dimension][];
         this.reducerNum = reducerNum;
 
+        originalRPath = outputPath + "/disk_ori";
         defaultCurrentRPath = outputPath + "/disk_cur";
         defaultBlockBPath = outputPath + "/disk_block";
         tempPath = outputPath + "/temp";
         currentRPath = outputPath + "/disk_cur";
         blockBPath = outputPath + "/disk_block";
-        distributedCachePath = outputPath +"/cache";
+        pendingRemovalPath = outputPath + "/pending";
+        blockMaskPath = outputPath + "/masks";
 
         conf = new Configuration();
         conf.setInt(Parameter.PARAM_DIMENSION, dimension);
         conf.setInt(Parameter.PARAM_REDUCER_NUM, reducerNum);
 
-        long fileSize = getFileSize(originalPath);
         conf.setBoolean("mapred.map.tasks.speculative.execution", false);
         conf.setInt("mapred.map.tasks", reducerNum);
-        conf.setLong("mapred.min.split.size", ((fileSize/reducerNum)+1L));
-        conf.setLong("mapred.max.split.size", ((fileSize/reducerNum)+1L));
 
     }
 
+    /**
+     * split the given inputs of the given job evenly into as many splits as reducers
+     * the size is set for each job since the text input, its binary copy, and B differ in size
+     */
+    protected void setSplitSize(Job job, String... inputPaths) throws IOException {
+        long fileSize = 0;
+        for(String inputPath : inputPaths) {
+            fileSize += getFileSize(inputPath);
+        }
+        job.getConfiguration().setLong("mapred.min.split.size", ((fileSize/reducerNum)+1L));
+        job.getConfiguration().setLong("mapred.max.split.size", ((fileSize/reducerNum)+1L));
+    }
+
+    /**
+     * read the input of the given job in the binary format (TupleWritable)
+     */
+    protected static void setBinaryInput(Job job) {
+        job.setInputFormatClass(SequenceFileInputFormat.class);
+    }
+
+    /**
+     * write the output of the given job, including its named outputs, as SequenceFiles compressed by blocks
+     */
+    protected static void setBinaryOutput(Job job) {
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        setBlockCompression(job);
+    }
+
+    protected static void setBlockCompression(Job job) {
+        SequenceFileOutputFormat.setCompressOutput(job, true);
+        SequenceFileOutputFormat.setOutputCompressorClass(job, DefaultCodec.class);
+        SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.BLOCK);
+    }
+
     private long getFileSize(String filePath) throws IOException {
 
         long size = 0;
@@ -455,39 +551,16 @@ public class ProposedHadoop {
     }
 
 
+    /**
+     * read the cardinalities and the attribute-value masses computed by the bootstrap job in copyOriTesnor
+     */
     public void initialize() throws Exception {
-        runCardinalityJob();
         readCardinalities();
-        runAttValMassJob(originalPath);
         readAttValMasses(attValMasses);
         massR = computeMass(attValMasses);
         massRori = massR;
     }
 
-    private void runCardinalityJob() throws Exception {
-        FileSystem fs = FileSystem.get(conf);
-        if(fs.exists(new Path(tempPath))) {
-            fs.delete(new Path(tempPath), true);
-        }
-
-        Job job = new Job(conf, "ModeLength");
-
-        job.setJarByClass(CardinalityMR.class);
-        job.setMapperClass(CardinalityMR.CardinalityMapper.class);
-
-        job.setNumReduceTasks(1);
-        job.setReducerClass(CardinalityMR.CardinalityReducer.class);
-        job.setMapOutputKeyClass(IntWritable.class);
-        job.setMapOutputValueClass(IntWritable.class);
-        job.setOutputKeyClass(NullWritable.class);
-        job.setOutputValueClass(Text.class);
-
-        FileInputFormat.addInputPath(job, new Path(originalPath));
-        FileOutputFormat.setOutputPath(job, new Path(tempPath));
-
-        job.waitForCompletion(true);
-    }
-
     private void readCardinalities() throws  Exception {
         FileSystem fs = FileSystem.get(conf);
         String parentPath = tempPath;
@@ -495,16 +568,12 @@ public class ProposedHadoop {
 
         for(FileStatus status : statusList){
             String fileName = status.getPath().getName();
-            if (fileName.contains("part")) {
-                BufferedReader in = new BufferedReader(new InputStreamReader(fs.open(new Path(parentPath + "/" + fileName))));
-                while (true) {
-                    String line = in.readLine();
-                    if(line==null)
-                        break;
-                    String[] tokens = line.split(",");
-                    int mode = Integer.valueOf(tokens[0]);
-                    int modeLength = Integer.valueOf(tokens[1]);
-                    cardinalities[mode] = modeLength;
+            if (fileName.startsWith(BootstrapMR.CARDINALITIES)) {
+                SequenceFile.Reader in = new SequenceFile.Reader(fs, status.getPath(), conf);
+                IntWritable mode = new IntWritable();
+                IntWritable modeLength = new IntWritable();
+                while (in.next(mode, modeLength)) {
+                    cardinalities[mode.get()] = modeLength.get();
                 }
                 in.close();
             }
@@ -537,126 +606,323 @@ public class ProposedHadoop {
         return dimension;
     }
 
-    protected void copyOriTesnor() throws IOException {
-        currentRPath = originalPath;
+    /**
+     * convert the input tensor into the binary format, which is kept as the original tensor and used as the first R
+     * the same job computes the cardinalities and the attribute-value masses, which are left in the temp path
+     */
+    protected void copyOriTesnor() throws Exception {
+        FileSystem fs = FileSystem.get(conf);
+        if(fs.exists(new Path(blockMaskPath))) { //masks of a previous run
+            fs.delete(new Path(blockMaskPath), true);
+        }
+        runBootstrapJob();
+        currentRPath = originalRPath; //replaced by the survivors when the first block is removed
+    }
+
+    private void runBootstrapJob() throws Exception {
+        FileSystem fs = FileSystem.get(conf);
+        if(fs.exists(new Path(tempPath))) {
+            fs.delete(new Path(tempPath), true);
+        }
+
+        Job job = new Job(conf, "Bootstrap");
+        job.setJarByClass(BootstrapMR.class);
+        job.setMapperClass(BootstrapMR.BootstrapMapper.class);
+
+        job.setNumReduceTasks(reducerNum);
+        job.setReducerClass(BootstrapMR.BootstrapReducer.class);
+        job.setMapOutputKeyClass(ModeAttValWritable.class);
+        job.setMapOutputValueClass(IntWritable.class);
+        job.setOutputKeyClass(NullWritable.class);
+        job.setOutputValueClass(AttValMassesWritable.class);
+        setBinaryOutput(job);
+        MultipleOutputs.addNamedOutput(job, BootstrapMR.TENSOR, SequenceFileOutputFormat.class, NullWritable.class, TupleWritable.class);
+        MultipleOutputs.addNamedOutput(job, BootstrapMR.CARDINALITIES, SequenceFileOutputFormat.class, IntWritable.class, IntWritable.class);
+
+        FileInputFormat.addInputPath(job, new Path(originalPath));
+        FileOutputFormat.setOutputPath(job, new Path(tempPath));
+        setSplitSize(job, originalPath);
+
+        job.waitForCompletion(true);
+        long numOfTuples = job.getCounters().findCounter(BootstrapMR.Counter.NUM_OF_TUPLES).getValue();
+
+        if(fs.exists(new Path(originalRPath))) {
+            fs.delete(new Path(originalRPath), true);
+        }
+        Path tensorPath = new Path(tempPath + "/" + BootstrapMR.TENSOR);
+        if(fs.exists(tensorPath)) {
+            fs.rename(tensorPath, new Path(originalRPath));
+            if(numOfTuples > 0) { //the binary copies of R and B are compressed alike, thus their splits are sized by this
+                conf.setFloat(Parameter.PARAM_BYTES_PER_TUPLE, (float) getFileSize(originalRPath) / numOfTuples);
+            }
+        }
+        else { //the input tensor is empty
+            fs.mkdirs(new Path(originalRPath));
+        }
+    }
+
+    public void setHybridThreshold(long hybridThreshold) {
+        this.hybridThreshold = hybridThreshold;
+    }
+
+    public void setPrune(boolean prune) {
+        this.prune = prune;
+    }
+
+    /**
+     * @param maxTheta mass threshold used at the start of each block, which is decreased to the given mass threshold (0 to disable)
+     */
+    public void setAdaptiveTheta(double maxTheta) {
+        this.maxTheta = maxTheta;
+    }
+
+    /**
+     * @param deadline time in milliseconds (as System.currentTimeMillis()) when the run stops with the blocks found so far
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
     }
 
     protected void copyBlock() throws IOException, ClassNotFoundException, InterruptedException {
         blockBPath = currentRPath;
+        inMemoryB = null;
+        clearPendingRemovals();
+        massB = massR;
+        massOfMaterializedB = massR;
+    }
+
+    private void clearPendingRemovals() throws IOException {
+        FileSystem fs = FileSystem.get(conf);
+        if(fs.exists(new Path(pendingRemovalPath))) {
+            fs.delete(new Path(pendingRemovalPath), true);
+        }
+        numOfPendingRemovals = 0;
+        pendingAttValsToRemove = new AttValBitmap[dimension];
     }
 
     protected void removeAndUpdateAttValMasses(int mode, boolean[] attValsToRemove, int[][] attValMasses) throws Exception {
-        runRemoveBJob(mode, attValsToRemove);
-        runAttValMassJob(blockBPath);
+        if(inMemoryB != null) {
+            TensorMethods.removeFromBuffer(inMemoryB, mode, attValsToRemove, attValMasses);
+            return;
+        }
+
+        int[] attValToMass = attValMasses[mode];
+        for(int attVal = 0; attVal < attValsToRemove.length; attVal++) {
+            if(attValsToRemove[attVal]) {
+                massB -= attValToMass[attVal];
+            }
+        }
+        boolean materialize = massB < massOfMaterializedB * (1 - MATERIALIZATION_THRESHOLD);
+        long numOfTuples = runRemoveBAttValMassJob(mode, attValsToRemove, materialize);
         readAttValMasses(attValMasses);
+
+        if(numOfTuples * (dimension + 1) * 4 < hybridThreshold && numOfTuples < Integer.MAX_VALUE) {
+            loadBlockIntoMemory((int) numOfTuples);
+        }
     }
 
-    public void runRemoveBJob(int mode, boolean[] attValsToRemove) throws Exception {
+    /**
+     * read the tuples of B, except those in the pending removal sets, into memory
+     * the remaining iterations are run on the in-memory copy, without MapReduce jobs
+     */
+    private void loadBlockIntoMemory(int numOfTuples) throws IOException {
+        inMemoryB = readIntoMemory(blockBPath, pendingAttValsToRemove, numOfTuples);
+    }
 
-        conf.setInt(Parameter.PARAM_MODE_TO_REMOVE, mode);
+    /**
+     * read the tuples in the given path, except those with an attribute value in the given sets, into memory
+     * @param attValsToSkip n -> attribute values whose tuples are skipped in the nth mode, null if none
+     * @param numOfTuples number of the tuples read
+     */
+    protected Tensor readIntoMemory(String path, AttValBitmap[] attValsToSkip, int numOfTuples) throws IOException {
+        long start = System.currentTimeMillis();
+        int[][] attributes = new int[dimension][numOfTuples];
+        int[] values = new int[numOfTuples];
+        int bufferUsage = 0;
+        long mass = 0;
 
-        //create a file to distribute
-        String fileToDistribute = getTempLocalFilePath();
-        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(fileToDistribute), 8388608));
-        for(int att=0; att<attValsToRemove.length; att++) {
-            if(attValsToRemove[att]) {
-                out.writeInt(att);
+        FileSystem fs = FileSystem.get(conf);
+        FileStatus[] statusList = fs.listStatus(new Path(path));
+        TupleWritable tuple = new TupleWritable(dimension);
+        for(FileStatus status : statusList) {
+            if (!status.getPath().getName().contains("part")) {
+                continue;
             }
+            SequenceFile.Reader in = new SequenceFile.Reader(fs, status.getPath(), conf);
+            while (in.next(NullWritable.get(), tuple)) {
+                boolean removed = false;
+                for(int mode = 0; mode < dimension; mode++) {
+                    if(attValsToSkip[mode] != null && attValsToSkip[mode].get(tuple.attVals[mode])) {
+                        removed = true;
+                        break;
+                    }
+                }
+                if(removed) {
+                    continue;
+                }
+                for(int mode = 0; mode < dimension; mode++) {
+                    attributes[mode][bufferUsage] = tuple.attVals[mode];
+                }
+                values[bufferUsage++] = tuple.value;
+                mass += tuple.value;
+            }
+            in.close();
         }
+
+        System.out.println("B was loaded into memory (" + bufferUsage + " tuples). " + (System.currentTimeMillis() - start + 0.0) / 1000 + " seconds was taken.");
+        return new Tensor(dimension, cardinalities, attributes, values, bufferUsage, mass, numOfTuples, bufferUsage, null, null);
+    }
+
+    /**
+     * remove tuples from B and compute the attribute-value masses of the remaining tuples in one job
+     * the given removal set is pushed on the pending removal sets, which are applied while B is scanned
+     * if materialize is true, the remaining tuples are written as the new B and the pending removal sets are cleared
+     * the masses are left in the temp path
+     * @return number of the remaining tuples
+     */
+    public long runRemoveBAttValMassJob(int mode, boolean[] attValsToRemove, boolean materialize) throws Exception {
+
+        //create a file to distribute
+        String fileToDistribute = getTempLocalFilePath();
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(fileToDistribute)));
+        out.writeInt(mode);
+        AttValBitmap bitmap = new AttValBitmap(attValsToRemove);
+        bitmap.write(out);
         out.close();
+        if(pendingAttValsToRemove[mode] == null) {
+            pendingAttValsToRemove[mode] = bitmap;
+        }
+        else {
+            pendingAttValsToRemove[mode].or(bitmap);
+        }
 
         //upload a file to distribute
         FileSystem fs = FileSystem.get(conf);
-        fs.copyFromLocalFile(true, true, new Path(fileToDistribute), new Path(distributedCachePath));
+        fs.copyFromLocalFile(true, true, new Path(fileToDistribute), new Path(pendingRemovalPath + "/pending_" + numOfPendingRemovals));
+        numOfPendingRemovals++;
 
         if(fs.exists(new Path(tempPath))) {
             fs.delete(new Path(tempPath), true);
         }
 
-        Job job = new Job(conf, "RemoveB");
-        job.setJarByClass(RemoveBMR.class);
-        job.setMapperClass(RemoveBMR.RemoveBMapper.class);
+        Job job = new Job(conf, "RemoveBAttValMass");
+        job.setJarByClass(RemoveBAttValMassMR.class);
+        job.setMapperClass(RemoveBAttValMassMR.RemoveBAttValMassMapper.class);
+        setBinaryInput(job);
 
-        job.setNumReduceTasks(0); //map only job
-        job.setReducerClass(RemoveBMR.RemoveBReducer.class);
-        job.setMapOutputKeyClass(NullWritable.class);
-        job.setMapOutputValueClass(Text.class);
+        job.setNumReduceTasks(reducerNum);
+        job.setReducerClass(AttValMassMR.AttValMassReducer.class);
+        job.setPartitionerClass(AttValMassPartitioner.class);
+        job.setMapOutputKeyClass(ModeAttValWritable.class);
+        job.setMapOutputValueClass(IntWritable.class);
         job.setOutputKeyClass(NullWritable.class);
-        job.setOutputValueClass(Text.class);
+        job.setOutputValueClass(AttValMassesWritable.class);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        job.getConfiguration().setBoolean(Parameter.PARAM_MATERIALIZE, materialize);
+        if(materialize) {
+            MultipleOutputs.addNamedOutput(job, RemoveBAttValMassMR.SURVIVORS, SequenceFileOutputFormat.class, NullWritable.class, TupleWritable.class);
+            setBlockCompression(job);
+        }
 
         FileInputFormat.addInputPath(job, new Path(blockBPath));
+        setSplitSize(job, blockBPath);
         FileOutputFormat.setOutputPath(job, new Path(tempPath));
 
-        DistributedCache.addCacheFile(new Path(distributedCachePath).toUri(), job.getConfiguration());
+        for(int i = 0; i < numOfPendingRemovals; i++) {
+            DistributedCache.addCacheFile(new Path(pendingRemovalPath + "/pending_" + i).toUri(), job.getConfiguration());
+        }
 
         job.waitForCompletion(true);
+        long numOfTuples = job.getCounters().findCounter(RemoveBAttValMassMR.Counter.ALIVE_TUPLES).getValue();
+
+        if(!materialize) {
+            return numOfTuples;
+        }
 
         blockBPath = defaultBlockBPath; //blockBPath can be set to currentRPath
         if(fs.exists(new Path(blockBPath))) {
             fs.delete(new Path(blockBPath), true);
         }
-        fs.rename(new Path(tempPath), new Path(blockBPath));
-
-    }
-
-    public void runAttValMassJob(String inputPath) throws Exception {
-
-        FileSystem fs = FileSystem.get(conf);
-        if(fs.exists(new Path(tempPath))) {
-            fs.delete(new Path(tempPath), true);
+        Path survivorsPath = new Path(tempPath + "/" + RemoveBAttValMassMR.SURVIVORS);
+        if(fs.exists(survivorsPath)) {
+            fs.rename(survivorsPath, new Path(blockBPath));
         }
-
-        Job job = new Job(conf, "AttValMass");
-        job.setJarByClass(AttValMassMR.class);
-        job.setMapperClass(AttValMassMR.AttValMassMapper.class);
-
-        job.setNumReduceTasks(reducerNum);
-        job.setReducerClass(AttValMassMR.AttValMassReducer.class);
-        job.setMapOutputKeyClass(IntWritable.class);
-        job.setMapOutputValueClass(IntWritable.class);
-        job.setOutputKeyClass(NullWritable.class);
-        job.setOutputValueClass(Text.class);
-
-        FileInputFormat.addInputPath(job, new Path(inputPath));
-        FileOutputFormat.setOutputPath(job, new Path(tempPath));
-
-        job.waitForCompletion(true);
+        else { //every tuple was removed
+            fs.mkdirs(new Path(blockBPath));
+        }
+        clearPendingRemovals();
+        massOfMaterializedB = massB;
+        return numOfTuples;
     }
 
-    public void readAttValMasses(int[][] attValMasses) throws IOException {
-
-        FileSystem fs = FileSystem.get(conf);
-        String parentPath = tempPath;
-        FileStatus[] statusList = fs.listStatus(new Path(parentPath));
+    /**
+     * read the attribute-value masses in the temp path, the part files are read in parallel
+     * each run covers distinct attribute values, thus the threads write to disjoint entries
+     */
+    public void readAttValMasses(final int[][] attValMasses) throws Exception {
         for(int mode = 0; mode < dimension; mode++) {
             attValMasses[mode] = null;
             attValMasses[mode] = new int[cardinalities[mode]];
         }
+        readAttValMasses(conf, tempPath, attValMasses);
+    }
 
-        //read attribute-value masses
+    /**
+     * read the attribute-value masses in the given path into the given arrays, which should be filled with zeros
+     */
+    protected static void readAttValMasses(final Configuration conf, String parentPath, final int[][] attValMasses) throws Exception {
+
+        final FileSystem fs = FileSystem.get(conf);
+        FileStatus[] statusList = fs.listStatus(new Path(parentPath));
+
+        List<Path> partPaths = new LinkedList<Path>();
         for(FileStatus status : statusList){
             String fileName = status.getPath().getName();
             if (fileName.contains("part")) {
-                BufferedReader in = new BufferedReader(new InputStreamReader(fs.open(new Path(parentPath + "/" + fileName))));
-                while (true) {
-                    String line = in.readLine();
-                    if (line == null)
-                        break;
-                    String[] tokens = line.split(",");
-                    int mode = Integer.valueOf(tokens[0]);
-                    int att = Integer.valueOf(tokens[1]);
-                    int sum = Integer.valueOf(tokens[2]);
-                    attValMasses[mode][att] = sum;
-                }
-                in.close();
+                partPaths.add(status.getPath());
+            }
+        }
+        if(partPaths.isEmpty()) {
+            return;
+        }
+
+        //read attribute-value masses
+        int threadNum = Math.min(partPaths.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threadNum);
+        try {
+            List<Future<Object>> futures = new LinkedList<Future<Object>>();
+            for (final Path partPath : partPaths) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        SequenceFile.Reader in = new SequenceFile.Reader(fs, partPath, conf);
+                        NullWritable key = NullWritable.get();
+                        AttValMassesWritable run = new AttValMassesWritable();
+                        while (in.next(key, run)) {
+                            run.copyTo(attValMasses);
+                        }
+                        in.close();
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
             }
+        } finally {
+            executor.shutdown();
         }
     }
 
     protected double removeAndEvaluateBlock(int blockIndex, BlockInfo block, IDensityMeasure measure, final boolean isLastIter) throws Exception {
-        runEvaluateJob(block);
+        long massB;
+        if(isLastIter) {
+            runEvaluateJob(blockIndex, block);
+            massB = readEvaluateResult();
+        }
+        else {
+            massB = runEvaluateRemoveRJob(blockIndex, block);
+        }
         int[] cardinalitiesOfBlock = block.blockCardinalities;
-        long massB = readEvaluateResult();
 
         System.out.println("Block: " + (blockIndex+1));
         System.out.print("Volume: ");
@@ -677,22 +943,99 @@ public class ProposedHadoop {
             return density;
         }
 
-        runRemoveRJob();
-        runAttValMassJob(currentRPath);
         readAttValMasses(attValMasses);
         massR = computeMass(attValMasses);
 
         return density;
     }
 
-    private void runEvaluateJob(BlockInfo block) throws Exception {
+    /**
+     * upload the attribute values of the given block as a bitmap per mode, which is distributed to mappers
+     */
+    protected void uploadBlockMask(String maskName, BlockInfo block) throws IOException {
 
         //create a file to distribute
-        String fileToDistribute = block.returnFileInfo(getTempLocalFilePath());
+        String fileToDistribute = getTempLocalFilePath();
+        boolean[][] bitMask = block.getBitMask(dimension, cardinalities);
+        AttValBitmap[] mask = new AttValBitmap[dimension];
+        for(int mode = 0; mode < dimension; mode++) {
+            mask[mode] = new AttValBitmap(bitMask[mode]);
+        }
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(fileToDistribute)));
+        AttValBitmap.writeMask(out, mask);
+        out.close();
 
         //upload a file to distribute
         FileSystem fs = FileSystem.get(conf);
-        fs.copyFromLocalFile(true, true, new Path(fileToDistribute), new Path(distributedCachePath));
+        fs.copyFromLocalFile(true, true, new Path(fileToDistribute), new Path(blockMaskPath + "/" + maskName));
+    }
+
+    /**
+     * compute the mass of the given block, remove it from R, and compute the attribute-value masses of the new R in one job
+     * the job reads the original tensor for the mass and the tuples of R for the new R, and both are matched against only the given block
+     * the masses are left in the temp path
+     * @return mass of the block
+     */
+    private long runEvaluateRemoveRJob(int blockIndex, BlockInfo block) throws Exception {
+
+        uploadBlockMask(EvaluateRemoveRMR.MASK + blockIndex, block);
+
+        FileSystem fs = FileSystem.get(conf);
+
+        if(fs.exists(new Path(tempPath))) {
+            fs.delete(new Path(tempPath), true);
+        }
+
+        Job job = new Job(conf, "EvaluateRemoveR");
+        job.setJarByClass(EvaluateRemoveRMR.class);
+
+        job.setNumReduceTasks(reducerNum);
+        job.setReducerClass(AttValMassMR.AttValMassReducer.class);
+        job.setPartitionerClass(AttValMassPartitioner.class);
+        job.setMapOutputKeyClass(ModeAttValWritable.class);
+        job.setMapOutputValueClass(IntWritable.class);
+        job.setOutputKeyClass(NullWritable.class);
+        job.setOutputValueClass(AttValMassesWritable.class);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        MultipleOutputs.addNamedOutput(job, EvaluateRemoveRMR.SURVIVORS, SequenceFileOutputFormat.class, NullWritable.class, TupleWritable.class);
+        setBlockCompression(job);
+
+        boolean isROriginal = currentRPath.equals(originalRPath); //no block has been removed
+        MultipleInputs.addInputPath(job, new Path(currentRPath), SequenceFileInputFormat.class, EvaluateRemoveRMR.RemoveRMapper.class);
+        if(!isROriginal) {
+            MultipleInputs.addInputPath(job, new Path(originalRPath), SequenceFileInputFormat.class, EvaluateRemoveRMR.BlockMassMapper.class);
+            setSplitSize(job, currentRPath, originalRPath);
+        }
+        else {
+            setSplitSize(job, currentRPath);
+        }
+        FileOutputFormat.setOutputPath(job, new Path(tempPath));
+
+        DistributedCache.addCacheFile(new Path(blockMaskPath + "/" + EvaluateRemoveRMR.MASK + blockIndex).toUri(), job.getConfiguration());
+
+        job.waitForCompletion(true);
+        long massB = job.getCounters().findCounter(isROriginal ? EvaluateRemoveRMR.Counter.MASS_REMOVED_FROM_R : EvaluateRemoveRMR.Counter.MASS_OF_BLOCK).getValue();
+
+        currentRPath = defaultCurrentRPath;
+        if(fs.exists(new Path(currentRPath))) {
+            fs.delete(new Path(currentRPath), true);
+        }
+        Path survivorsPath = new Path(tempPath + "/" + EvaluateRemoveRMR.SURVIVORS);
+        if(fs.exists(survivorsPath)) {
+            fs.rename(survivorsPath, new Path(currentRPath));
+        }
+        else { //every tuple was removed
+            fs.mkdirs(new Path(currentRPath));
+        }
+
+        return massB;
+    }
+
+    private void runEvaluateJob(int blockIndex, BlockInfo block) throws Exception {
+
+        uploadBlockMask(EvaluateRemoveRMR.MASK + blockIndex, block);
+
+        FileSystem fs = FileSystem.get(conf);
 
         if(fs.exists(new Path(tempPath))) {
             fs.delete(new Path(tempPath), true);
@@ -701,6 +1044,7 @@ public class ProposedHadoop {
         Job job = new Job(conf, "Evaluate");
         job.setJarByClass(EvaluateMR.class);
         job.setMapperClass(EvaluateMR.EvaluateMapper.class);
+        setBinaryInput(job);
 
         job.setNumReduceTasks(1);
         job.setReducerClass(EvaluateMR.EvaluateReducer.class);
@@ -709,10 +1053,11 @@ public class ProposedHadoop {
         job.setOutputKeyClass(NullWritable.class);
         job.setOutputValueClass(Text.class);
 
-        FileInputFormat.addInputPath(job, new Path(originalPath));
+        FileInputFormat.addInputPath(job, new Path(originalRPath));
         FileOutputFormat.setOutputPath(job, new Path(tempPath));
+        setSplitSize(job, originalRPath);
 
-        DistributedCache.addCacheFile(new Path(distributedCachePath).toUri(), job.getConfiguration());
+        DistributedCache.addCacheFile(new Path(blockMaskPath + "/" + EvaluateRemoveRMR.MASK + blockIndex).toUri(), job.getConfiguration());
 
         job.waitForCompletion(true);
     }
@@ -743,41 +1088,7 @@ public class ProposedHadoop {
         return mass;
     }
 
-    private void runRemoveRJob() throws Exception {
-
-        FileSystem fs = FileSystem.get(conf);
-
-        if(fs.exists(new Path(tempPath))) {
-            fs.delete(new Path(tempPath), true);
-        }
-
-        Job job = new Job(conf, "RemoveR");
-        job.setJarByClass(RemoveRMR.class);
-        job.setMapperClass(RemoveRMR.RemoveRMapper.class);
-
-        job.setNumReduceTasks(0);
-        job.setReducerClass(RemoveRMR.RemoveRReducer.class);
-        job.setMapOutputKeyClass(NullWritable.class);
-        job.setMapOutputValueClass(Text.class);
-        job.setOutputKeyClass(NullWritable.class);
-        job.setOutputValueClass(Text.class);
-
-        FileInputFormat.addInputPath(job, new Path(currentRPath));
-        FileOutputFormat.setOutputPath(job, new Path(tempPath));
-
-        DistributedCache.addCacheFile(new Path(distributedCachePath).toUri(), job.getConfiguration()); //reuse
-
-        job.waitForCompletion(true);
-
-        currentRPath = defaultCurrentRPath;
-        if(fs.exists(new Path(currentRPath))) {
-            fs.delete(new Path(currentRPath), true);
-        }
-        fs.rename(new Path(tempPath), new Path(currentRPath));
-
-    }
-
-    private long computeMass(int[][] degree) {
+    protected long computeMass(int[][] degree) {
         long massR = 0;
         for(int index = 0; index < cardinalities[0]; index++){
             massR += degree[0][index];
@@ -802,40 +1113,62 @@ public class ProposedHadoop {
     private void writeOutput(String output, List<BlockInfo> blockInfoList) throws Exception {
 
         int blockNum = blockInfoList.size();
+        List<String> maskNames = new LinkedList<String>();
+        List<String> tuplesPaths = new LinkedList<String>();
         for(int blockIndex = 0; blockIndex < blockNum; blockIndex++) {
-
-            //write attribute values
-            String attPath = getTempLocalFilePath();
-            BufferedWriter bw = new BufferedWriter(new FileWriter(attPath));
-            final boolean[][] attributeToValuesToWrite = new boolean[dimension][];
             BlockInfo block = blockInfoList.get(blockIndex);
-            Set<Integer>[] attributeToValues = block.getAttributeValues(dimension);
-            for (int dim = 0; dim < dimension; dim++) {
-                attributeToValuesToWrite[dim] = new boolean[cardinalities[dim]];
-                for (int value : attributeToValues[dim]) {
-                    attributeToValuesToWrite[dim][value] = true;
-                    bw.write(dim + "," + value);
-                    bw.newLine();
-                }
-            }
-            bw.close();
-            FileSystem fs = FileSystem.get(conf);
-            fs.copyFromLocalFile(true, true, new Path(attPath), new Path(output + "/block_" + (blockIndex + 1) + ".attributes"));
-            runComputeBOriJob(blockIndex, block);
+            writeAttributes(block, output + "/block_" + (blockIndex + 1) + ".attributes");
+            maskNames.add(EvaluateRemoveRMR.MASK + blockIndex);
+            tuplesPaths.add(output + "/block_" + (blockIndex + 1) + ".tuples");
+            uploadBlockMask(maskNames.get(blockIndex), block);
+        }
+        runComputeBOriJob(maskNames, tuplesPaths);
+    }
 
+    /**
+     * write the numbers of the blocks whose peeling was stopped by the deadline to the given path, one per line
+     */
+    protected void writePartialBlocks(String partialBlocksPath, List<Integer> partialBlocks) throws IOException {
+        String localPath = getTempLocalFilePath();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(localPath));
+        for (int blockNumber : partialBlocks) {
+            bw.write(String.valueOf(blockNumber));
+            bw.newLine();
         }
+        bw.close();
+        FileSystem fs = FileSystem.get(conf);
+        fs.copyFromLocalFile(true, true, new Path(localPath), new Path(partialBlocksPath));
     }
 
-    private void runComputeBOriJob(int blockIndex, BlockInfo block) throws Exception {
+    /**
+     * write the attribute values of the given block to the given path
+     */
+    protected void writeAttributes(BlockInfo block, String attributesPath) throws IOException {
+        String attPath = getTempLocalFilePath();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(attPath));
+        Set<Integer>[] attributeToValues = block.getAttributeValues(dimension);
+        for (int dim = 0; dim < dimension; dim++) {
+            for (int value : attributeToValues[dim]) {
+                bw.write(dim + "," + value);
+                bw.newLine();
+            }
+        }
+        bw.close();
+        FileSystem fs = FileSystem.get(conf);
+        fs.copyFromLocalFile(true, true, new Path(attPath), new Path(attributesPath));
+    }
 
-        //create a file to distribute
-        String fileToDistribute = block.returnFileInfo(getTempLocalFilePath());
+    /**
+     * write the tuples of every block in one job, which reads the input tensor to keep the lines of the user as they are
+     * @param maskNames names of the uploaded masks of the blocks
+     * @param tuplesPaths paths where the tuples of the blocks are written
+     */
+    protected void runComputeBOriJob(List<String> maskNames, List<String> tuplesPaths) throws Exception {
 
-        //upload a file to distribute
         FileSystem fs = FileSystem.get(conf);
-        fs.copyFromLocalFile(true, true, new Path(fileToDistribute), new Path(distributedCachePath));
-
-        String blockOutputPath = outputPath +"/block_"+(blockIndex+1)+".tuples";
+        if(fs.exists(new Path(tempPath))) {
+            fs.delete(new Path(tempPath), true);
+        }
 
         Job job = new Job(conf, "ComputeBOri");
         job.setJarByClass(ComputeBOriMR.class);
@@ -846,13 +1179,30 @@ public class ProposedHadoop {
         job.setMapOutputValueClass(Text.class);
         job.setOutputKeyClass(NullWritable.class);
         job.setOutputValueClass(Text.class);
+        MultipleOutputs.addNamedOutput(job, ComputeBOriMR.TUPLES, TextOutputFormat.class, NullWritable.class, Text.class);
 
         FileInputFormat.addInputPath(job, new Path(originalPath));
-        FileOutputFormat.setOutputPath(job, new Path(blockOutputPath));
+        FileOutputFormat.setOutputPath(job, new Path(tempPath));
+        setSplitSize(job, originalPath);
 
-        DistributedCache.addCacheFile(new Path(distributedCachePath).toUri(), job.getConfiguration());
+        for(String maskName : maskNames) {
+            DistributedCache.addCacheFile(new Path(blockMaskPath + "/" + maskName).toUri(), job.getConfiguration());
+        }
 
         job.waitForCompletion(true);
 
+        for(int i = 0; i < maskNames.size(); i++) {
+            Path blockOutputPath = new Path(tuplesPaths.get(i));
+            if(fs.exists(blockOutputPath)) {
+                fs.delete(blockOutputPath, true);
+            }
+            Path tuplesPath = new Path(tempPath + "/" + maskNames.get(i));
+            if(fs.exists(tuplesPath)) {
+                fs.rename(tuplesPath, blockOutputPath);
+            }
+            else { //the block has no tuple
+                fs.mkdirs(blockOutputPath);
+            }
+        }
     }
 }
@@ -0,0 +1,122 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package dcube.hadoop;
+
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import java.io.*;
+
+/**
+ * MR job for removing attribute values and the corresponding tuples from the current block B
+ * and computing the attribute-value masses of the remaining tuples in the same pass
+ * B is scanned as last materialized, and every pending removal set in the DistributedCache is applied on the fly
+ * Only if PARAM_MATERIALIZE is set, the remaining tuples are written to the named output SURVIVORS
+ * The masses are reduced by AttValMassMR.AttValMassReducer
+ * @author kijungs
+ */
+public class RemoveBAttValMassMR {
+
+    public static final String SURVIVORS = "survivors";
+
+    public enum Counter {
+        ALIVE_TUPLES // number of remaining tuples
+    }
+
+    public static class RemoveBAttValMassMapper
+            extends Mapper<NullWritable, TupleWritable, ModeAttValWritable, IntWritable> {
+
+        private int dimension = 0;
+        private AttValBitmap[] attValsToRemove; // n -> removed attribute values in the nth mode, null if none
+        private int[] modesToCheck; // modes with removed attribute values
+        private boolean materialize;
+        private long numOfAliveTuples = 0;
+        private int[] cardinalities = null;
+        private AttValMassAggregator aggregator;
+        private MultipleOutputs<ModeAttValWritable, IntWritable> multipleOutputs;
+
+        @Override
+        public void setup(Context context
+        ) throws IOException, InterruptedException {
+            dimension = context.getConfiguration().getInt(Parameter.PARAM_DIMENSION, 0);
+            cardinalities = new int[dimension];
+            for(int mode = 0; mode < dimension; mode++) {
+                cardinalities[mode] = context.getConfiguration().getInt(Parameter.PARAM_CARDINALITY + mode, 0);
+            }
+            aggregator = new AttValMassAggregator(dimension, cardinalities, context);
+
+            //each pending removal set is a mode followed by a bitmap
+            attValsToRemove = new AttValBitmap[dimension];
+            int numOfModesToCheck = 0;
+            Path[] localPaths = DistributedCache.getLocalCacheFiles(context.getConfiguration());
+            if(localPaths != null && localPaths.length > 0) {
+                for(Path path : localPaths) {
+                    ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(path.toString())));
+                    int mode = in.readInt();
+                    AttValBitmap bitmap = AttValBitmap.read(in);
+                    in.close();
+                    if(attValsToRemove[mode] == null) {
+                        attValsToRemove[mode] = bitmap;
+                        numOfModesToCheck++;
+                    }
+                    else {
+                        attValsToRemove[mode].or(bitmap);
+                    }
+                }
+            }
+            modesToCheck = new int[numOfModesToCheck];
+            for(int mode = 0, i = 0; mode < dimension; mode++) {
+                if(attValsToRemove[mode] != null) {
+                    modesToCheck[i++] = mode;
+                }
+            }
+
+            materialize = context.getConfiguration().getBoolean(Parameter.PARAM_MATERIALIZE, true);
+            if(materialize) {
+                multipleOutputs = new MultipleOutputs<ModeAttValWritable, IntWritable>(context);
+            }
+        }
+
+        @Override
+        public void map(NullWritable key, TupleWritable value, Context context
+        ) throws IOException, InterruptedException {
+            for(int mode : modesToCheck) {
+                if(attValsToRemove[mode].get(value.attVals[mode])) {
+                    return;
+                }
+            }
+            numOfAliveTuples++;
+            if(materialize) {
+                multipleOutputs.write(SURVIVORS, key, value, SURVIVORS + "/part");
+            }
+            aggregator.add(value.attVals, value.value);
+        }
+
+        @Override
+        public void cleanup(Context context) throws IOException, InterruptedException {
+            if(materialize) {
+                multipleOutputs.close();
+            }
+            context.getCounter(Counter.ALIVE_TUPLES).increment(numOfAliveTuples);
+            aggregator.flush();
+        }
+    }
+
+}
@@ -0,0 +1,650 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package dcube.hadoop;
+
+import dcube.*;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+
+import java.io.*;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * D-Cube Hadoop Version running several configurations (density measure, policy, mass threshold) at once
+ * The peeling states of the configurations are advanced in lock step, and each step is one SweepMR job,
+ * which reads R or B of every configuration, kept separately as in ProposedHadoop, once for the whole sweep
+ * @author kijungs
+ */
+public class SweepHadoop extends ProposedHadoop {
+
+    /**
+     * Main function
+     *
+     * @param args input_path, output_path, dimension, density_measures, policies, mass_thresholds, num_of_blocks, num_of_reducers, log_path
+     * @throws IOException
+     */
+    public static void main(String[] args) throws Exception {
+        final long launchTime = System.currentTimeMillis();
+        if (args.length < 9) {
+            printError();
+            System.exit(-1);
+        }
+
+        final String input = args[0];
+        System.out.println("input_path: " + input);
+
+        final String output = args[1];
+        System.out.println("output_path: " + output);
+
+        final int dimension = Integer.valueOf(args[2]);
+        System.out.println("dimension: " + dimension);
+
+        String[] measureNames = args[3].split(",");
+        String[] policyNames = args[4].split(",");
+        String[] thetaNames = args[5].split(",");
+        List<SweepConfig> configs = new LinkedList<SweepConfig>();
+        for(String measureName : measureNames) {
+            for(String policyName : policyNames) {
+                for(String thetaName : thetaNames) {
+                    SweepConfig config = new SweepConfig(measureName, policyName, thetaName);
+                    if(config.densityMeasure == null) {
+                        System.err.println("Unknown Density Measure: " + measureName);
+                        printError();
+                        System.exit(-1);
+                    }
+                    if(config.policy < 0) {
+                        System.err.println("Unknown Policy: " + policyName);
+                        printError();
+                        System.exit(-1);
+                    }
+                    if(config.theta < 1) {
+                        System.err.println("Mass_threshold should be greater than or equal to one");
+                        printError();
+                        System.exit(-1);
+                    }
+                    configs.add(config);
+                }
+            }
+        }
+        System.out.println("configurations: " + configs);
+
+        final int blockNum = Integer.valueOf(args[6]);
+        System.out.println("num_of_blocks: " + blockNum);
+
+        int reducerNum = Integer.valueOf(args[7]);
+        System.out.println("num_of_reducers: " + reducerNum);
+
+        String logPath = args[8];
+        System.out.println("log path (local): " + logPath);
+
+        long hybridThreshold = 0;
+        boolean prune = false;
+        double deadline = 0;
+        double maxTheta = 0;
+        for(int i = 9; i < args.length; i++) {
+            if(args[i].compareToIgnoreCase("--hybrid") == 0 && i + 1 < args.length) {
+                hybridThreshold = Long.valueOf(args[++i]) * 1024 * 1024;
+            } else if(args[i].compareToIgnoreCase("--prune") == 0) {
+                prune = true;
+            } else if(args[i].compareToIgnoreCase("--deadline") == 0 && i + 1 < args.length) {
+                deadline = Double.valueOf(args[++i]);
+            } else if(args[i].compareToIgnoreCase("--adaptive") == 0 && i + 1 < args.length) {
+                maxTheta = Double.valueOf(args[++i]);
+            } else {
+                System.err.println("Unknown Option: " + args[i]);
+                printError();
+                System.exit(-1);
+            }
+        }
+        System.out.println("hybrid_threshold (MB): " + hybridThreshold / 1024 / 1024);
+        System.out.println("prune: " + prune);
+        System.out.println("deadline (seconds): " + deadline);
+        System.out.println("adaptive_max_threshold: " + maxTheta);
+        for(SweepConfig config : configs) {
+            if(maxTheta > 0 && maxTheta < config.theta) {
+                System.err.println("Max_mass_threshold should be greater than or equal to every mass_threshold");
+                printError();
+                System.exit(-1);
+            }
+        }
+
+        File dir = new File(logPath);
+
+        try{
+            dir.mkdir();
+        }
+        catch(Exception e){
+        }
+
+        try {
+            System.setOut(new PrintStream(new File(logPath+"/log.txt")));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        System.out.println("input path: " + input);
+        System.out.println("output path: " + output);
+        System.out.println("dimension: " + dimension);
+        System.out.println("configurations: " + configs);
+        System.out.println("num_of_blocks: " + blockNum);
+        System.out.println("reducerNum: " + reducerNum);
+        System.out.println("log path (local): " + logPath);
+        System.out.println("hybrid_threshold (MB): " + hybridThreshold / 1024 / 1024);
+        System.out.println("prune: " + prune);
+        System.out.println("deadline (seconds): " + deadline);
+        System.out.println("adaptive_max_threshold: " + maxTheta);
+
+        System.out.println();
+        System.out.println("running the algorithm...");
+        SweepHadoop sweep = new SweepHadoop(input, output, logPath, dimension, reducerNum);
+        sweep.setHybridThreshold(hybridThreshold);
+        sweep.setPrune(prune);
+        sweep.setAdaptiveTheta(maxTheta);
+        if(deadline > 0) {
+            sweep.setDeadline(launchTime + (long) (deadline * 1000));
+        }
+        sweep.run(blockNum, configs.toArray(new SweepConfig[configs.size()]));
+
+    }
+
+    private static void printError() {
+        System.err.println("Usage: run_sweep_hadoop.sh input_path output_path dimension density_measures policies mass_thresholds num_of_blocks num_of_reducers log_path [--hybrid size_in_MB] [--prune] [--deadline time_in_seconds] [--adaptive max_mass_threshold]");
+        System.err.println("Density_measures, policies, and mass_thresholds are comma-separated lists, and every combination is run");
+        System.err.println("Density_measure should be one of [ari, geo, susp]");
+        System.err.println("Policy should be one of [density, cardinality]");
+        System.err.println("Mass_threshold should be a number greater than or equal to one");
+        System.err.println("--hybrid finishes each block of a configuration in memory once the block is smaller than the given size");
+        System.err.println("--prune stops peeling once the remaining block cannot get denser than the best one (ari and geo only)");
+        System.err.println("--deadline stops the run at the given number of seconds after the start, and the best block found so far is returned as a partial block");
+        System.err.println("--adaptive starts each block with max_mass_threshold, which is decreased towards mass_threshold once a pass with it would result in a lower density than with mass_threshold");
+    }
+
+    /**
+     * one configuration of the sweep
+     */
+    private static class SweepConfig {
+
+        private final String name; // name of the output folder
+        private DensityMeasure densityMeasure = null;
+        private int policy = -1;
+        private final double theta;
+
+        private SweepConfig(String measureName, String policyName, String thetaName) {
+            if (measureName.compareToIgnoreCase("ARI") == 0) {
+                densityMeasure = DensityMeasure.Arithmetic;
+            } else if (measureName.compareToIgnoreCase("GEO") == 0) {
+                densityMeasure = DensityMeasure.Geometric;
+            } else if (measureName.compareToIgnoreCase("SUSP") == 0) {
+                densityMeasure = DensityMeasure.Suspiciousness;
+            }
+            if (policyName.compareToIgnoreCase("CARDINALITY") == 0) {
+                policy = Proposed.POLICY_MAX_CARNDILITY;
+            } else if(policyName.compareToIgnoreCase("DENSITY") == 0) {
+                policy = Proposed.POLICY_MAX_DENSITY;
+            }
+            theta = Double.valueOf(thetaName);
+            name = measureName.toLowerCase() + "_" + policyName.toLowerCase() + "_" + theta;
+        }
+
+        private IDensityMeasure createMeasure() {
+            if(densityMeasure == DensityMeasure.Suspiciousness)
+                return new Suspiciousness();
+            else if(densityMeasure == DensityMeasure.Arithmetic)
+                return new Arithmetic();
+            else
+                return new Geometric();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * state of the peeling of one configuration, which is advanced one pass at a time by Proposed.Peeling
+     * as in ProposedHadoop, R and B of the configuration are kept as files, and B is rewritten only after a large part of its mass is removed
+     */
+    private class PeelingState {
+
+        private final int configIndex;
+        private final SweepConfig config;
+        private final int blockNum;
+        private final IDensityMeasure evaluationMeasure;
+        private final List<BlockInfo> blocks = new LinkedList<BlockInfo>();
+        private final List<Integer> partialBlocks = new LinkedList<Integer>();
+        private final String defaultCurrentRPath;
+        private final String defaultBlockBPath;
+        private String currentRPath; // R of the configuration, which is the original tensor until a block is removed
+        private boolean done = false;
+        private boolean evaluating = false; // true if the newest block is evaluated by the next scan
+        private boolean lastBlock = false; // true if the newest block is the last one, thus it is not removed from R
+        private double bestAccuracy = 0;
+
+        //state of the current block
+        private String blockBPath;
+        private int[][] modeToAttValToMass; // (n, i) -> mass of ith attribute value in the nth mode
+        private AttValBitmap[] pendingAttValsToRemove; // n -> union of the removal sets not yet applied to the files of B in the nth mode
+        private int numOfPendingRemovals; // number of removal sets not yet applied to the files of B
+        private long massB; // mass of B after the pending removals
+        private long massOfMaterializedB; // mass of B as last written
+        private boolean materialize = false; // true if the next scan writes the remaining tuples as the new B
+        private Tensor inMemoryB = null;
+        private Proposed.Peeling peeling;
+
+        private PeelingState(int configIndex, SweepConfig config, int blockNum) {
+            this.configIndex = configIndex;
+            this.config = config;
+            this.blockNum = blockNum;
+            evaluationMeasure = config.createMeasure();
+            evaluationMeasure.initialize(dimension, cardinalities, massRori);
+            defaultCurrentRPath = outputPath + "/disk_cur_" + configIndex;
+            defaultBlockBPath = outputPath + "/disk_block_" + configIndex;
+            currentRPath = originalRPath;
+            configPaths.add(defaultCurrentRPath);
+            configPaths.add(defaultBlockBPath);
+        }
+
+        /**
+         * start to find a new block from R with the given attribute-value masses
+         */
+        private void startBlock(int[][] attValMasses, long massR) throws IOException {
+            blockBPath = currentRPath;
+            modeToAttValToMass = attValMasses;
+            clearPendingRemovals();
+            massB = massR;
+            massOfMaterializedB = massR;
+            int sumOfCardinalities = sumOfCarndinalities(dimension, cardinalities);
+            IDensityMeasure measure = config.createMeasure();
+            BlockIterInfo iterInfo = new BlockIterInfo(cardinalities, BlockIterInfo.properBufferUsage(sumOfCardinalities), getOrderingFullPath(configIndex, blocks.size()));
+            double score = measure.initialize(dimension, cardinalities, massR);
+            peeling = new Proposed.Peeling(dimension, cardinalities, modeToAttValToMass, massR, measure, score, iterInfo, config.policy, config.theta, maxTheta);
+            evaluating = false;
+        }
+
+        private void clearPendingRemovals() {
+            pendingAttValsToRemove = new AttValBitmap[dimension];
+            for(int mode = 0; mode < dimension; mode++) {
+                pendingAttValsToRemove[mode] = new AttValBitmap(cardinalities[mode]);
+            }
+            numOfPendingRemovals = 0;
+        }
+
+        /**
+         * choose a mode and remove the attribute values with small masses in it, which are removed from B by the next scan
+         * if B is in memory, the passes are repeated without scans
+         * if every attribute value has been removed or the peeling is stopped, the block is returned and its mask is uploaded
+         */
+        private void step() throws IOException {
+            do {
+                if(peeling.stopAtDeadline(deadline)) {
+                    partialBlocks.add(blocks.size() + 1);
+                    returnBlock();
+                    return;
+                }
+                if(prune && peeling.stopIfPruned()) {
+                    returnBlock();
+                    return;
+                }
+                int maxMode = peeling.selectMode();
+                boolean[] attValsToRemove = peeling.removeFromMode(maxMode);
+                if(peeling.isDone()) {
+                    returnBlock();
+                    return;
+                }
+                if(inMemoryB != null) {
+                    TensorMethods.removeFromBuffer(inMemoryB, maxMode, attValsToRemove, modeToAttValToMass);
+                    continue;
+                }
+                int[] attValToMass = modeToAttValToMass[maxMode];
+                for(int attVal = 0; attVal < attValsToRemove.length; attVal++) {
+                    if(attValsToRemove[attVal]) {
+                        massB -= attValToMass[attVal];
+                    }
+                }
+                pendingAttValsToRemove[maxMode].or(new AttValBitmap(attValsToRemove));
+                numOfPendingRemovals++;
+                materialize = massB < massOfMaterializedB * (1 - MATERIALIZATION_THRESHOLD);
+            } while(inMemoryB != null);
+        }
+
+        private void returnBlock() throws IOException {
+            int blockIndex = blocks.size();
+            BlockInfo block = peeling.returnBlock(getBlockInfoFullPath(configIndex, blockIndex));
+            blocks.add(block);
+            uploadBlockMask(SweepMR.getMaskName(configIndex, blockIndex), block);
+            if(!blockBPath.equals(currentRPath)) {
+                FileSystem.get(conf).delete(new Path(blockBPath), true);
+            }
+            blockBPath = null;
+            modeToAttValToMass = null;
+            pendingAttValsToRemove = null;
+            inMemoryB = null;
+            peeling = null;
+            evaluating = true;
+            lastBlock = blocks.size() == blockNum || System.currentTimeMillis() > deadline;
+        }
+
+        /**
+         * update the masses of B, whose remaining tuples were written as the new B by the last scan if materialize was set
+         * once B is small enough, it is loaded into memory
+         * @param numOfTuples number of the remaining tuples of B
+         */
+        private void updateBlock(int[][] attValMasses, long numOfTuples) throws Exception {
+            System.arraycopy(attValMasses, 0, modeToAttValToMass, 0, dimension);
+            if(materialize) {
+                blockBPath = defaultBlockBPath;
+                moveSurvivors(configIndex, blockBPath);
+                clearPendingRemovals();
+                massOfMaterializedB = massB;
+                materialize = false;
+            }
+            if(numOfTuples * (dimension + 1) * 4 < hybridThreshold && numOfTuples < Integer.MAX_VALUE) {
+                inMemoryB = readIntoMemory(blockBPath, pendingAttValsToRemove, (int) numOfTuples);
+            }
+        }
+
+        /**
+         * report the newest block, whose mass was computed by the last scan, and replace R by the tuples of R not in the block
+         * @return true if the configuration has found all the blocks
+         */
+        private boolean finishBlock(long massB) throws IOException {
+            int blockIndex = blocks.size() - 1;
+            int[] cardinalitiesOfBlock = blocks.get(blockIndex).blockCardinalities;
+
+            System.out.println("Configuration: " + config);
+            System.out.println("Block: " + (blockIndex+1));
+            System.out.print("Volume: ");
+            for(int mode = 0; mode < dimension; mode++) {
+                System.out.print(cardinalitiesOfBlock[mode]);
+                if(mode < dimension - 1) {
+                    System.out.print(" X ");
+                }
+            }
+
+            System.out.println();
+            double density = evaluationMeasure.density(massB, cardinalitiesOfBlock);
+            System.out.println("Density: " + density);
+            System.out.println("Mass: " + massB);
+            bestAccuracy = Math.max(bestAccuracy, density);
+
+            evaluating = false;
+            done = lastBlock;
+            if(!done) {
+                currentRPath = defaultCurrentRPath;
+                moveSurvivors(configIndex, currentRPath);
+            }
+            return done;
+        }
+    }
+
+    private String removedPath;
+    private List<String> configPaths = new LinkedList<String>(); // R and B of every configuration
+    private Counters lastCounters; // counters of the last SweepMR job
+
+    public SweepHadoop(String inputPath, String outputPath, String logPath, int dimension, int reducerNum) throws Exception {
+        super(inputPath, outputPath, logPath, dimension, reducerNum);
+        removedPath = outputPath + "/removed";
+    }
+
+    public void run(final int blockNum, SweepConfig[] configs) throws Exception {
+
+        long start = System.currentTimeMillis();
+        copyOriTesnor();
+        initialize();
+
+        int numOfConfigs = configs.length;
+        PeelingState[] states = new PeelingState[numOfConfigs];
+        for(int configIndex = 0; configIndex < numOfConfigs; configIndex++) {
+            states[configIndex] = new PeelingState(configIndex, configs[configIndex], blockNum);
+            int[][] masses = new int[dimension][];
+            for(int mode = 0; mode < dimension; mode++) {
+                masses[mode] = attValMasses[mode].clone();
+            }
+            states[configIndex].startBlock(masses, massRori);
+        }
+
+        int numOfScans = 0;
+        int numOfDoneConfigs = blockNum > 0 ? 0 : numOfConfigs;
+        while(numOfDoneConfigs < numOfConfigs) {
+            for(PeelingState state : states) {
+                if(!state.done && !state.evaluating) {
+                    state.step();
+                }
+            }
+
+            //(c * dimension + n, i) -> mass of ith attribute value in the nth mode for the c-th configuration
+            int[][] taggedAttValMasses = runSweepJob(states);
+            numOfScans++;
+
+            for(PeelingState state : states) {
+                if(state.done) {
+                    continue;
+                }
+                int[][] masses = new int[dimension][];
+                System.arraycopy(taggedAttValMasses, state.configIndex * dimension, masses, 0, dimension);
+                if(state.evaluating) {
+                    if(state.finishBlock(readCounter(SweepMR.MASS_OF_BLOCK, state.configIndex))) {
+                        numOfDoneConfigs++;
+                        continue;
+                    }
+                    state.startBlock(masses, computeMass(masses));
+                }
+                else {
+                    state.updateBlock(masses, readCounter(SweepMR.ALIVE_TUPLES, state.configIndex));
+                }
+            }
+        }
+
+        System.out.println("Number of scans: " + numOfScans);
+        for(PeelingState state : states) {
+            System.out.println("Best density (" + state.config + "): " + state.bestAccuracy);
+        }
+        System.out.println("Running time: " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds");
+
+        start = System.currentTimeMillis();
+        System.out.println("Writing outputs...");
+        writeOutput(states);
+        System.out.println("Outputs were written. " + (System.currentTimeMillis() - start + 0.0) / 1000 + " seconds was taken.");
+
+        System.out.println("Removing temporary files...");
+        remove(states, blockNum);
+        removeTempPaths();
+        System.out.println("Temporary files were removed.");
+    }
+
+    private long readCounter(String name, int configIndex) {
+        return lastCounters.findCounter(SweepMR.COUNTER_GROUP, name + configIndex).getValue();
+    }
+
+    /**
+     * replace the given path by the tuples written for the given configuration by the last SweepMR job
+     */
+    private void moveSurvivors(int configIndex, String path) throws IOException {
+        FileSystem fs = FileSystem.get(conf);
+        if(fs.exists(new Path(path))) {
+            fs.delete(new Path(path), true);
+        }
+        Path survivorsPath = new Path(tempPath + "/" + SweepMR.getSurvivorsName(configIndex));
+        if(fs.exists(survivorsPath)) {
+            fs.rename(survivorsPath, new Path(path));
+        }
+        else { //every tuple was removed
+            fs.mkdirs(new Path(path));
+        }
+    }
+
+    /**
+     * scan R or B of every configuration that is not done, where each path is read once even if several configurations share it
+     * the configuration of the job treats the sweep as a tensor with (number of configurations) * dimension modes
+     * @return attribute-value masses in the tagged modes
+     */
+    private int[][] runSweepJob(PeelingState[] states) throws Exception {
+
+        int numOfConfigs = states.length;
+        FileSystem fs = FileSystem.get(conf);
+        if(fs.exists(new Path(tempPath))) {
+            fs.delete(new Path(tempPath), true);
+        }
+
+        Job job = new Job(conf, "Sweep");
+        Configuration jobConf = job.getConfiguration();
+        jobConf.setInt(Parameter.PARAM_DIMENSION, numOfConfigs * dimension);
+        jobConf.setInt(Parameter.PARAM_CONFIG_NUM, numOfConfigs);
+        //the mappers match the paths with their inputs, which are qualified
+        jobConf.set(Parameter.PARAM_ORIGINAL_INPUT, fs.makeQualified(new Path(originalRPath)).toString());
+        Set<String> inputPaths = new LinkedHashSet<String>();
+        boolean anyToMaterialize = false;
+        int[][] taggedAttValMasses = new int[numOfConfigs * dimension][];
+        for(PeelingState state : states) {
+            int configIndex = state.configIndex;
+            for(int mode = 0; mode < dimension; mode++) {
+                jobConf.setInt(Parameter.PARAM_CARDINALITY + (configIndex * dimension + mode), cardinalities[mode]);
+                taggedAttValMasses[configIndex * dimension + mode] = new int[state.done ? 0 : cardinalities[mode]];
+            }
+            jobConf.setBoolean(Parameter.PARAM_CONFIG_ACTIVE + configIndex, !state.done);
+            jobConf.setBoolean(Parameter.PARAM_CONFIG_EVALUATE + configIndex, state.evaluating);
+            if(state.done) {
+                continue;
+            }
+
+            String input = null;
+            boolean materialize;
+            if(state.evaluating) {
+                //the mass of the block is summed from the original tensor, and the block is removed from R unless it is the last one
+                inputPaths.add(originalRPath);
+                DistributedCache.addCacheFile(new Path(blockMaskPath + "/" + SweepMR.getMaskName(configIndex, state.blocks.size() - 1)).toUri(), jobConf);
+                if(!state.lastBlock) {
+                    input = state.currentRPath;
+                }
+                materialize = input != null;
+            }
+            else {
+                input = state.blockBPath;
+                materialize = state.materialize;
+                if(state.numOfPendingRemovals > 0) {
+                    //the pending removal sets are cumulative, thus the file is replaced in every iteration
+                    String fileToDistribute = getTempLocalFilePath();
+                    ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(fileToDistribute)));
+                    AttValBitmap.writeMask(out, state.pendingAttValsToRemove);
+                    out.close();
+                    Path removedFilePath = new Path(removedPath + "/" + SweepMR.getRemovedName(configIndex));
+                    fs.copyFromLocalFile(true, true, new Path(fileToDistribute), removedFilePath);
+                    DistributedCache.addCacheFile(removedFilePath.toUri(), jobConf);
+                }
+            }
+            if(input != null) {
+                inputPaths.add(input);
+                jobConf.set(Parameter.PARAM_CONFIG_INPUT + configIndex, fs.makeQualified(new Path(input)).toString());
+            }
+            jobConf.setBoolean(Parameter.PARAM_CONFIG_MATERIALIZE + configIndex, materialize);
+            if(materialize) {
+                MultipleOutputs.addNamedOutput(job, SweepMR.getSurvivorsName(configIndex), SequenceFileOutputFormat.class, NullWritable.class, TupleWritable.class);
+                anyToMaterialize = true;
+            }
+        }
+
+        job.setJarByClass(SweepMR.class);
+        job.setMapperClass(SweepMR.SweepMapper.class);
+        setBinaryInput(job);
+
+        job.setNumReduceTasks(reducerNum);
+        job.setReducerClass(AttValMassMR.AttValMassReducer.class);
+        job.setPartitionerClass(AttValMassPartitioner.class);
+        job.setMapOutputKeyClass(ModeAttValWritable.class);
+        job.setMapOutputValueClass(IntWritable.class);
+        job.setOutputKeyClass(NullWritable.class);
+        job.setOutputValueClass(AttValMassesWritable.class);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        if(anyToMaterialize) {
+            setBlockCompression(job);
+        }
+
+        for(String inputPath : inputPaths) {
+            FileInputFormat.addInputPath(job, new Path(inputPath));
+        }
+        setSplitSize(job, inputPaths.toArray(new String[inputPaths.size()]));
+        FileOutputFormat.setOutputPath(job, new Path(tempPath));
+
+        job.waitForCompletion(true);
+        lastCounters = job.getCounters();
+
+        readAttValMasses(jobConf, tempPath, taggedAttValMasses);
+        return taggedAttValMasses;
+    }
+
+    @Override
+    protected List<String> getTempPaths() {
+        List<String> tempPaths = super.getTempPaths();
+        tempPaths.add(removedPath);
+        tempPaths.addAll(configPaths);
+        return tempPaths;
+    }
+
+    private String getOrderingFullPath(int configIndex, int blockIndex) {
+        return logPath + File.separator + "ordering_info_" + configIndex + "_" + blockIndex;
+    }
+
+    private String getBlockInfoFullPath(int configIndex, int blockIndex) {
+        return logPath + File.separator + "block_info_" + configIndex + "_" + blockIndex;
+    }
+
+    /**
+     * write the blocks found by each configuration to its own folder in the output path, the tuples are written in one job
+     */
+    private void writeOutput(PeelingState[] states) throws Exception {
+        List<String> maskNames = new LinkedList<String>();
+        List<String> tuplesPaths = new LinkedList<String>();
+        for(PeelingState state : states) {
+            String output = outputPath + "/" + state.config;
+            if(!state.partialBlocks.isEmpty()) {
+                writePartialBlocks(output + "/" + Proposed.partialBlocksName, state.partialBlocks);
+            }
+            for(int blockIndex = 0; blockIndex < state.blocks.size(); blockIndex++) {
+                writeAttributes(state.blocks.get(blockIndex), output + "/block_" + (blockIndex + 1) + ".attributes");
+                maskNames.add(SweepMR.getMaskName(state.configIndex, blockIndex));
+                tuplesPaths.add(output + "/block_" + (blockIndex + 1) + ".tuples");
+            }
+        }
+        runComputeBOriJob(maskNames, tuplesPaths);
+    }
+
+    /**
+     * Remove Temp Files
+     */
+    private void remove(PeelingState[] states, int blockNum) {
+        for(PeelingState state : states) {
+            for (int blockIndex = 0; blockIndex < blockNum; blockIndex++) {
+                new File(getBlockInfoFullPath(state.configIndex, blockIndex)).delete();
+                new File(getOrderingFullPath(state.configIndex, blockIndex)).delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package dcube.hadoop;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import java.io.*;
+
+/**
+ * MR job scanning the tensors of all the configurations of a sweep (SweepHadoop) at once
+ * Each configuration c keeps its own R and B, which are the input of the job, and a path shared by several configurations is read once
+ * While c peels a block, the tuples of B without an attribute value in the pending removal set of c are kept,
+ * and they are written as the new B of c if c materializes B
+ * Once c has found a block, the tuples of R not in the block are kept and written as the new R of c,
+ * and the mass of the block is summed from the original tensor in the counter MASS_OF_BLOCK + c
+ * The masses of the kept tuples are emitted under the tagged mode c * dimension + mode,
+ * thus the job is configured as a tensor with (number of configurations) * dimension modes
+ * @author kijungs
+ */
+public class SweepMR {
+
+    public static final String CONFIG = "config";
+    public static final String REMOVED = "_removed";
+    public static final String SURVIVORS = "survivors";
+    public static final String COUNTER_GROUP = "sweep";
+    public static final String MASS_OF_BLOCK = "mass_of_block_";
+    public static final String ALIVE_TUPLES = "alive_tuples_";
+
+    /**
+     * @return name of the k-th block mask of the c-th configuration
+     */
+    public static String getMaskName(int config, int blockIndex) {
+        return CONFIG + config + "_" + EvaluateRemoveRMR.MASK + blockIndex;
+    }
+
+    /**
+     * @return name of the pending removal set of the c-th configuration
+     */
+    public static String getRemovedName(int config) {
+        return CONFIG + config + REMOVED;
+    }
+
+    /**
+     * @return name of the output where the kept tuples of the c-th configuration are written
+     */
+    public static String getSurvivorsName(int config) {
+        return SURVIVORS + config;
+    }
+
+    private static boolean contains(AttValBitmap[] mask, int[] attVals) {
+        for(int mode = 0; mode < attVals.length; mode++) {
+            if(!mask[mode].get(attVals[mode])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean intersects(AttValBitmap[] attValsToRemove, int[] attVals) {
+        for(int mode = 0; mode < attVals.length; mode++) {
+            if(attValsToRemove[mode].get(attVals[mode])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class SweepMapper
+            extends Mapper<NullWritable, TupleWritable, ModeAttValWritable, IntWritable> {
+
+        private int dimension = 0;
+        private int[] configsToKeep; // configurations whose B or R is the input of this mapper
+        private int[] configsToEvaluate; // configurations whose newest block is evaluated from this input, which is the original tensor
+        private boolean[] evaluate; // c -> whether the newest block of the c-th configuration is evaluated
+        private boolean[] materialize; // c -> whether the kept tuples of the c-th configuration are written
+        private AttValBitmap[][] masks; // (c, n) -> attribute values of the newest block of the c-th configuration in the nth mode
+        private AttValBitmap[][] removed; // (c, n) -> attribute values in the pending removal set of the c-th configuration in the nth mode, null if none
+        private long[] massOfBlocks;
+        private long[] numOfAliveTuples;
+        private AttValMassAggregator aggregator;
+        private MultipleOutputs<ModeAttValWritable, IntWritable> multipleOutputs = null;
+
+        @Override
+        public void setup(Context context
+        ) throws IOException, InterruptedException {
+            Configuration conf = context.getConfiguration();
+            int numOfConfigs = conf.getInt(Parameter.PARAM_CONFIG_NUM, 1);
+            int taggedDimension = conf.getInt(Parameter.PARAM_DIMENSION, 0);
+            dimension = taggedDimension / numOfConfigs;
+            int[] taggedCardinalities = new int[taggedDimension];
+            for(int mode = 0; mode < taggedDimension; mode++) {
+                taggedCardinalities[mode] = conf.getInt(Parameter.PARAM_CARDINALITY + mode, 0);
+            }
+
+            //the configurations are matched with this input by its folder
+            String input = ((FileSplit) context.getInputSplit()).getPath().getParent().toUri().getPath();
+            boolean isOriginal = input.equals(new Path(conf.get(Parameter.PARAM_ORIGINAL_INPUT)).toUri().getPath());
+            int numOfConfigsToKeep = 0;
+            int numOfConfigsToEvaluate = 0;
+            boolean[] keep = new boolean[numOfConfigs];
+            evaluate = new boolean[numOfConfigs];
+            materialize = new boolean[numOfConfigs];
+            for(int config = 0; config < numOfConfigs; config++) {
+                if(!conf.getBoolean(Parameter.PARAM_CONFIG_ACTIVE + config, false)) {
+                    continue;
+                }
+                String configInput = conf.get(Parameter.PARAM_CONFIG_INPUT + config);
+                keep[config] = configInput != null && input.equals(new Path(configInput).toUri().getPath());
+                evaluate[config] = conf.getBoolean(Parameter.PARAM_CONFIG_EVALUATE + config, false);
+                materialize[config] = conf.getBoolean(Parameter.PARAM_CONFIG_MATERIALIZE + config, false);
+                if(keep[config]) {
+                    numOfConfigsToKeep++;
+                }
+                if(evaluate[config] && isOriginal) {
+                    numOfConfigsToEvaluate++;
+                }
+            }
+            configsToKeep = new int[numOfConfigsToKeep];
+            configsToEvaluate = new int[numOfConfigsToEvaluate];
+            boolean anyToMaterialize = false;
+            for(int config = 0, i = 0, j = 0; config < numOfConfigs; config++) {
+                if(keep[config]) {
+                    configsToKeep[i++] = config;
+                    anyToMaterialize |= materialize[config];
+                }
+                if(evaluate[config] && isOriginal) {
+                    configsToEvaluate[j++] = config;
+                }
+            }
+
+            masks = new AttValBitmap[numOfConfigs][];
+            removed = new AttValBitmap[numOfConfigs][];
+            massOfBlocks = new long[numOfConfigs];
+            numOfAliveTuples = new long[numOfConfigs];
+            Path[] localPaths = DistributedCache.getLocalCacheFiles(conf);
+            if(localPaths != null) {
+                for(Path path : localPaths) {
+                    String name = path.getName();
+                    int config = Integer.valueOf(name.substring(CONFIG.length(), name.indexOf('_')));
+                    ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(path.toString())));
+                    AttValBitmap[] mask = AttValBitmap.readMask(in, dimension);
+                    in.close();
+                    if(name.endsWith(REMOVED)) {
+                        removed[config] = mask;
+                    }
+                    else {
+                        masks[config] = mask;
+                    }
+                }
+            }
+
+            if(anyToMaterialize) {
+                multipleOutputs = new MultipleOutputs<ModeAttValWritable, IntWritable>(context);
+            }
+            aggregator = new AttValMassAggregator(taggedDimension, taggedCardinalities, context);
+        }
+
+        @Override
+        public void map(NullWritable key, TupleWritable value, Context context
+        ) throws IOException, InterruptedException {
+            int[] attVals = value.attVals;
+            for(int config : configsToEvaluate) {
+                if(contains(masks[config], attVals)) {
+                    massOfBlocks[config] += value.value;
+                }
+            }
+            for(int config : configsToKeep) {
+                if(evaluate[config] ? contains(masks[config], attVals) : removed[config] != null && intersects(removed[config], attVals)) {
+                    continue;
+                }
+                numOfAliveTuples[config]++;
+                if(materialize[config]) {
+                    multipleOutputs.write(getSurvivorsName(config), key, value, getSurvivorsName(config) + "/part");
+                }
+                int offset = config * dimension;
+                for(int mode = 0; mode < dimension; mode++) {
+                    aggregator.add(offset + mode, attVals[mode], value.value);
+                }
+            }
+        }
+
+        @Override
+        public void cleanup(Context context) throws IOException, InterruptedException {
+            if(multipleOutputs != null) {
+                multipleOutputs.close();
+            }
+            for(int config : configsToEvaluate) {
+                context.getCounter(COUNTER_GROUP, MASS_OF_BLOCK + config).increment(massOfBlocks[config]);
+            }
+            for(int config : configsToKeep) {
+                context.getCounter(COUNTER_GROUP, ALIVE_TUPLES + config).increment(numOfAliveTuples[config]);
+            }
+            aggregator.flush();
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package dcube.hadoop;
+
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Tuple in the binary format, which is used for the intermediate tensors (R and B)
+ * A tuple is stored as a fixed-width record of its attribute values followed by its measure value
+ * @author kijungs
+ */
+public class TupleWritable implements Writable {
+
+    public int[] attVals = new int[0]; // n -> the n-th attribute value
+    public int value; // measure attribute value
+
+    public TupleWritable() {
+    }
+
+    public TupleWritable(int dimension) {
+        attVals = new int[dimension];
+    }
+
+    /**
+     * parse a line of the input tensor
+     * @param line attribute values and the measure value separated by commas
+     * @param dimension dimension of the input tensor
+     * @return false if the line does not have enough columns
+     */
+    public boolean parse(String line, int dimension) {
+        String[] tokens = line.split(",");
+        if(tokens.length < dimension + 1) {
+            return false;
+        }
+        if(attVals.length != dimension) {
+            attVals = new int[dimension];
+        }
+        for(int mode = 0; mode < dimension; mode++) {
+            attVals[mode] = Integer.valueOf(tokens[mode]);
+        }
+        value = Integer.valueOf(tokens[dimension]);
+        return true;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(attVals.length);
+        for(int mode = 0; mode < attVals.length; mode++) {
+            out.writeInt(attVals[mode]);
+        }
+        out.writeInt(value);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        int dimension = in.readByte();
+        if(attVals.length != dimension) {
+            attVals = new int[dimension];
+        }
+        for(int mode = 0; mode < dimension; mode++) {
+            attVals[mode] = in.readInt();
+        }
+        value = in.readInt();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for(int mode = 0; mode < attVals.length; mode++) {
+            builder.append(attVals[mode]).append(',');
+        }
+        return builder.append(value).toString();
+    }
+}
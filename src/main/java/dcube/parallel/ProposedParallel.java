@@ -0,0 +1,469 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package dcube.parallel;
+
+import dcube.*;
+
+import java.io.*;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * D-Cube Multi-Core Version based on partitioning and merging
+ * For each block, the remaining tuples are partitioned into shards, and a candidate block is found in each shard in parallel
+ * The shards share a memory budget, and the tuples beyond the budget are spilled to the folder of each shard
+ * The exact peeling is run only on the tuples whose attribute values are all in the union of the candidate blocks
+ * Blocks are removed from the whole tensor and evaluated as in the serial version
+ * @author kijungs
+ */
+public class ProposedParallel extends Proposed {
+
+    /**
+     * Main function
+     *
+     * @param args input_path, output_path, dimension, density_measure, policy, mass_threshold, num_of_blocks, num_of_shards
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 8) {
+            printError();
+            System.exit(-1);
+        }
+
+        final String input = args[0];
+        System.out.println("input_path: " + input);
+
+        final String output = args[1];
+        System.out.println("output_path: " + output);
+        File dir = new File(output);
+        try{
+            dir.mkdir();
+        }
+        catch(Exception e){
+        }
+
+        final int dimension = Integer.valueOf(args[2]);
+        System.out.println("dimension: " + dimension);
+
+        DensityMeasure densityMeasure = null;
+        if (args[3].compareToIgnoreCase("ARI") == 0) {
+            densityMeasure = DensityMeasure.Arithmetic;
+        } else if (args[3].compareToIgnoreCase("GEO") == 0) {
+            densityMeasure = DensityMeasure.Geometric;
+        } else if (args[3].compareToIgnoreCase("SUSP") == 0) {
+            densityMeasure = DensityMeasure.Suspiciousness;
+        } else {
+            System.err.println("Unknown Density Measure");
+            printError();
+            System.exit(-1);
+        }
+        System.out.println("density_measure: " + args[3]);
+
+        int policy = 0;
+        if (args[4].compareToIgnoreCase("CARDINALITY") == 0) {
+            policy = Proposed.POLICY_MAX_CARNDILITY;
+        } else if(args[4].compareToIgnoreCase("DENSITY") == 0) {
+            policy = Proposed.POLICY_MAX_DENSITY;
+        } else {
+            System.err.println("Unknown Policy");
+            printError();
+            System.exit(-1);
+        }
+        System.out.println("policy: " + args[4]);
+
+        final double theta = Double.valueOf(args[5]);
+        System.out.println("mass_threshold: " + theta);
+        if(theta < 1) {
+            System.err.println("Mass_threshold should be greater than or equal to one");
+            printError();
+            System.exit(-1);
+        }
+
+        final int blockNum = Integer.valueOf(args[6]);
+        System.out.println("num_of_blocks: " + blockNum);
+
+        final int shardNum = Integer.valueOf(args[7]);
+        System.out.println("num_of_shards: " + shardNum);
+        if(shardNum < 1) {
+            System.err.println("Num_of_shards should be at least one");
+            printError();
+            System.exit(-1);
+        }
+
+        int threadNum = Runtime.getRuntime().availableProcessors();
+        int partitionMode = -1;
+        boolean compare = false;
+        for(int i = 8; i < args.length; i++) {
+            if(args[i].compareToIgnoreCase("--threads") == 0 && i + 1 < args.length) {
+                threadNum = Integer.valueOf(args[++i]);
+            } else if(args[i].compareToIgnoreCase("--partition-mode") == 0 && i + 1 < args.length) {
+                partitionMode = Integer.valueOf(args[++i]);
+            } else if(args[i].compareToIgnoreCase("--compare") == 0) {
+                compare = true;
+            } else {
+                System.err.println("Unknown Option: " + args[i]);
+                printError();
+                System.exit(-1);
+            }
+        }
+        System.out.println("num_of_threads: " + threadNum);
+        System.out.println("partition_mode: " + (partitionMode < 0 ? "tuples" : "" + partitionMode));
+        System.out.println("compare: " + compare);
+        if(threadNum < 1) {
+            System.err.println("Num_of_threads should be at least one");
+            printError();
+            System.exit(-1);
+        }
+        if(partitionMode >= dimension) {
+            System.err.println("Partition_mode should be less than the dimension");
+            printError();
+            System.exit(-1);
+        }
+
+        System.out.println();
+        System.out.println("computing proper buffer size");
+        Pair<Long, int[]> info = probe(dimension, input, ",");
+        long omega = info.getKey();
+        int[] cardinalities = info.getValue();
+        int bufferSize = getProperBufferSizeForInputTensor(dimension, omega, cardinalities);
+
+        System.out.println();
+        System.out.println("storing the input tensor in the binary format...");
+        Tensor tensor = TensorMethods.importSparseTensor(input, ",", dimension, cardinalities, bufferSize, output + File.separator + Proposed.originalAttName, output + File.separator + Proposed.originalValueName);
+
+        System.out.println();
+        System.out.println("running the algorithm...");
+        ProposedParallel proposed = new ProposedParallel(tensor, output);
+        proposed.run(blockNum, densityMeasure, policy, theta, shardNum, threadNum, partitionMode, compare);
+    }
+
+    private static void printError() {
+        System.err.println("Usage: run_parallel.sh input_path output_path dimension density_measure policy mass_threshold num_of_blocks num_of_shards [--threads num_of_threads] [--partition-mode mode] [--compare]");
+        System.err.println("Density_measure should be one of [ari, geo, susp]");
+        System.err.println("Policy should be one of [density, cardinality]");
+        System.err.println("Mass_threshold should be a number greater than or equal to one");
+        System.err.println("--threads sets the number of shards searched at the same time (default: number of cores)");
+        System.err.println("--partition-mode hashes the attribute values of the given mode (0-based) to partition the tuples, which are partitioned in a round-robin manner by default");
+        System.err.println("--compare also runs the serial version, and reports the accuracy and the speedup");
+    }
+
+    private final static long streamBufferUsage = 4L * 8388608; // bytes of the buffers of the streams opened while a spilled part is searched
+
+    private final String outputPath;
+
+    public ProposedParallel(Tensor tensor, String outputPath) throws IOException {
+        super(tensor, outputPath);
+        this.outputPath = outputPath;
+    }
+
+    private String getShardPath(int shardIndex) {
+        return outputPath + File.separator + "shard_" + shardIndex;
+    }
+
+    private String getRestrictedPath() {
+        return outputPath + File.separator + "restricted";
+    }
+
+    /**
+     * find dense blocks by partitioning and merging, and compare them with those found by the serial version if compare is true
+     * @param partitionMode mode whose attribute values are hashed to partition the tuples, -1 to partition the tuples in a round-robin manner
+     */
+    public void run(final int blockNum, final DensityMeasure densityMeasure, final int policy, final double theta, final int shardNum, final int threadNum, final int partitionMode, final boolean compare) throws IOException {
+
+        long start = System.currentTimeMillis();
+        copyOriTesnor();
+        initialize();
+
+        IDensityMeasure measure = createMeasure(densityMeasure);
+        measure.initialize(getTensor(TensorType.OriginalR).dimension, getTensor(TensorType.OriginalR).cardinalities, getMass(TensorType.OriginalR));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threadNum);
+        List<BlockInfo> listOfBlocks = new LinkedList<BlockInfo>();
+        double[] densities = new double[blockNum];
+        try {
+            for (int i = 0; i < blockNum; i++) {
+                BlockInfo block = findOneBlockInParallel(pool, threadNum, densityMeasure, policy, theta, shardNum, partitionMode);
+                densities[i] = removeAndEvaluateBlock(i, block, measure);
+                listOfBlocks.add(block);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        double runningTime = (System.currentTimeMillis() - start + 0.0) / 1000;
+        System.out.println("Running time: " + runningTime + " seconds");
+
+        if(compare) {
+            compareWithSerial(blockNum, densityMeasure, policy, theta, densities, runningTime);
+        }
+
+        start = System.currentTimeMillis();
+        System.out.println("Writing outputs...");
+        writeOutput(outputPath, getTensor(TensorType.OriginalR), listOfBlocks);
+        System.out.println("Outputs were written. " + (System.currentTimeMillis() - start + 0.0) / 1000 + " seconds was taken.");
+
+        System.out.println("Removing temporary files...");
+        remove(blockNum);
+        System.out.println("Temporary files were removed.");
+    }
+
+    /**
+     * find candidate blocks in the shards of the current tensor in parallel, then peel the tensor restricted to their attribute values
+     * @return block found, whose attribute values are those of the whole tensor
+     */
+    private BlockInfo findOneBlockInParallel(ExecutorService pool, final int threadNum, final DensityMeasure densityMeasure, final int policy, final double theta, final int shardNum, final int partitionMode) throws IOException {
+
+        final Tensor R = getTensor(TensorType.CurrentR);
+        final int dimension = R.dimension;
+        final int[] cardinalities = R.cardinalities;
+
+        long start = System.currentTimeMillis();
+        final SubTensor[] shards = new SubTensor[shardNum];
+        final int expectedShardSize = (int) Math.min(Integer.MAX_VALUE - 8, (R.bufferUsage + R.diskUsage) / shardNum * 11 / 10 + 16);
+        final int shardBufferSize = getProperBufferSizeForParts(dimension, shardNum, Math.min(threadNum, shardNum));
+        for(int shardIndex = 0; shardIndex < shardNum; shardIndex++) {
+            shards[shardIndex] = new SubTensor(dimension, cardinalities, expectedShardSize, shardBufferSize, getShardPath(shardIndex));
+        }
+        distribute(R, shards, partitionMode, null);
+        System.out.println("Partition time: " + (System.currentTimeMillis() - start + 0.0) / 1000 + " seconds");
+        start = System.currentTimeMillis();
+
+        List<Future<int[][]>> futures = new LinkedList<Future<int[][]>>();
+        final long[] shardToTime = new long[shardNum]; // s -> time in milliseconds taken to search the sth shard
+        for(int shardIndex = 0; shardIndex < shardNum; shardIndex++) {
+            if(shards[shardIndex].size() == 0) {
+                continue;
+            }
+            final SubTensor shard = shards[shardIndex];
+            final int finalShardIndex = shardIndex;
+            shards[shardIndex] = null;
+            futures.add(pool.submit(new Callable<int[][]>() {
+                public int[][] call() throws IOException {
+                    long shardStart = System.currentTimeMillis();
+                    int[][] candidate = findCandidateBlock(shard, null, densityMeasure, policy, theta);
+                    shardToTime[finalShardIndex] = System.currentTimeMillis() - shardStart;
+                    return candidate;
+                }
+            }));
+        }
+
+        //union of the attribute values of the candidate blocks
+        final boolean[][] modeToAttValsInCandidates = new boolean[dimension][];
+        for(int mode = 0; mode < dimension; mode++) {
+            modeToAttValsInCandidates[mode] = new boolean[cardinalities[mode]];
+        }
+        for(Future<int[][]> future : futures) {
+            int[][] candidate;
+            try {
+                candidate = future.get();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+            for(int mode = 0; mode < dimension; mode++) {
+                for(int attVal : candidate[mode]) {
+                    modeToAttValsInCandidates[mode][attVal] = true;
+                }
+            }
+        }
+        long longestShardTime = 0;
+        for(long shardTime : shardToTime) {
+            longestShardTime = Math.max(longestShardTime, shardTime);
+        }
+        System.out.println("Candidate search time: " + (System.currentTimeMillis() - start + 0.0) / 1000 + " seconds (longest shard: " + (longestShardTime + 0.0) / 1000 + " seconds)");
+
+        start = System.currentTimeMillis();
+        SubTensor[] restricted = new SubTensor[]{new SubTensor(dimension, cardinalities, 16, getProperBufferSizeForParts(dimension, 1, 1), getRestrictedPath())};
+        distribute(R, restricted, -1, modeToAttValsInCandidates);
+        System.out.println("Restricted tensor: " + restricted[0].size() + " tuples");
+        int[][] modeToAttVals = findCandidateBlock(restricted[0], R, densityMeasure, policy, theta);
+        System.out.println("Restricted search time: " + (System.currentTimeMillis() - start + 0.0) / 1000 + " seconds");
+
+        int size = 0;
+        int[] blockCardinalities = new int[dimension];
+        for(int mode = 0; mode < dimension; mode++) {
+            blockCardinalities[mode] = modeToAttVals[mode].length;
+            size += blockCardinalities[mode];
+        }
+        byte[] modes = new byte[size];
+        int[] attVals = new int[size];
+        for(int mode = 0, i = 0; mode < dimension; mode++) {
+            for(int attVal : modeToAttVals[mode]) {
+                modes[i] = (byte) mode;
+                attVals[i++] = attVal;
+            }
+        }
+        return new BlockInfo(size, blockCardinalities, modes, attVals);
+    }
+
+    /**
+     * get the proper number of tuples kept in memory by each of the given number of parts
+     * each tuple in memory is stored in the part, in the copy of its measure values (R), and in the buffer of B
+     * @param dimension dimension of the input tensor
+     * @param partNum number of parts
+     * @param concurrentPartNum number of parts searched at the same time, each of which may stream its spilled tuples
+     * @return proper number of tuples kept in memory by each part
+     */
+    private static int getProperBufferSizeForParts(int dimension, int partNum, int concurrentPartNum) {
+        long memoryToUse = Runtime.getRuntime().maxMemory() * 7 / 10;
+        System.gc();
+        long memoryUsed = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        long memoryLeft = memoryToUse - memoryUsed - concurrentPartNum * streamBufferUsage;
+        return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(0L, memoryLeft / 4 / (2 * (dimension + 1) + 1) / partNum));
+    }
+
+    /**
+     * find a block in the given part of the tensor by the serial version, using the folder of the part for the temporary files
+     * the buffer of B is bounded by that of the part, thus parts can be searched at the same time
+     * @param wholeTensor tensor against which suspiciousness is measured, null if it is the part
+     * @return (n, j) -> jth attribute value of the block in the nth mode
+     */
+    private static int[][] findCandidateBlock(SubTensor part, Tensor wholeTensor, DensityMeasure densityMeasure, int policy, double theta) throws IOException {
+        String path = part.path();
+        new File(path).mkdir();
+        ProposedParallel proposed = new ProposedParallel(part.toTensor(), path);
+        proposed.setBlockBufferSize(part.bufferSize());
+        if(wholeTensor != null) {
+            proposed.setWholeTensor(wholeTensor.cardinalities, wholeTensor.mass);
+        }
+        proposed.copyOriTesnor();
+        proposed.initialize();
+        BlockInfo block = proposed.findOneBlock(0, densityMeasure, policy, theta);
+        int[][] modeToAttVals = part.attValsOf(block);
+        clear(path);
+        return modeToAttVals;
+    }
+
+    /**
+     * remove the given folder and every file in it
+     */
+    private static void clear(String path) {
+        File dir = new File(path);
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * distribute the remaining tuples of the given tensor to the given parts
+     * @param partitionMode mode whose attribute values are hashed, -1 to distribute the tuples in a round-robin manner
+     * @param modeToAttValsToKeep (n, i) -> whether the tuples with ith attribute value in the nth mode are kept, null to keep every tuple
+     */
+    private static void distribute(Tensor tensor, SubTensor[] parts, int partitionMode, boolean[][] modeToAttValsToKeep) throws IOException {
+
+        final int dimension = tensor.dimension;
+        final int partNum = parts.length;
+        final int[] tupleAttValues = new int[dimension];
+        ObjectInputStream inAtt = null;
+        ObjectInputStream inValue = null;
+        if(tensor.diskUsage > 0) {
+            inAtt = new ObjectInputStream(new BufferedInputStream(new FileInputStream(tensor.attFilePath), 8388608));
+            inValue = new ObjectInputStream(new BufferedInputStream(new FileInputStream(tensor.valueFilePath), 8388608));
+        }
+        long numOfTuples = 0;
+        for(long index = 0; ; index++) {
+            int value;
+            if(index < tensor.bufferUsage) {
+                value = tensor.measureValues[(int) index];
+                for(int mode = 0; mode < dimension; mode++) {
+                    tupleAttValues[mode] = tensor.attributes[mode][(int) index];
+                }
+            }
+            else {
+                if(inValue == null) {
+                    break;
+                }
+                value = inValue.readInt();
+                if(value == -1) {
+                    break;
+                }
+                for(int mode = 0; mode < dimension; mode++) {
+                    tupleAttValues[mode] = inAtt.readInt();
+                }
+            }
+            if(value == 0) { //already removed entry
+                continue;
+            }
+            if(modeToAttValsToKeep != null) {
+                boolean kept = true;
+                for(int mode = 0; mode < dimension; mode++) {
+                    if(!modeToAttValsToKeep[mode][tupleAttValues[mode]]) {
+                        kept = false;
+                        break;
+                    }
+                }
+                if(!kept) {
+                    continue;
+                }
+            }
+            int partIndex;
+            if(partitionMode < 0) {
+                partIndex = (int) (numOfTuples % partNum);
+            }
+            else { //multiplicative hashing
+                partIndex = (int) (((tupleAttValues[partitionMode] * 0x9E3779B97F4A7C15L) >>> 32) % partNum);
+            }
+            parts[partIndex].add(tupleAttValues, value);
+            numOfTuples++;
+        }
+        if(inValue != null) {
+            inAtt.close();
+            inValue.close();
+        }
+    }
+
+    /**
+     * run the serial version on the input tensor, and report the accuracy and the speedup of the blocks found in parallel
+     * @param densities i -> density of the ith block found in parallel
+     * @param runningTime running time of the parallel version in seconds
+     */
+    private void compareWithSerial(final int blockNum, DensityMeasure densityMeasure, final int policy, final double theta, double[] densities, double runningTime) throws IOException {
+
+        System.out.println();
+        System.out.println("running the serial version for comparison...");
+        long start = System.currentTimeMillis();
+        String serialPath = outputPath + File.separator + "serial";
+        new File(serialPath).mkdir();
+        ProposedParallel serial = new ProposedParallel(getTensor(TensorType.OriginalR), serialPath);
+        serial.copyOriTesnor();
+        serial.initialize();
+
+        IDensityMeasure measure = createMeasure(densityMeasure);
+        measure.initialize(getTensor(TensorType.OriginalR).dimension, getTensor(TensorType.OriginalR).cardinalities, getMass(TensorType.OriginalR));
+        double[] serialDensities = new double[blockNum];
+        for(int i = 0; i < blockNum; i++) {
+            BlockInfo block = serial.findOneBlock(i, densityMeasure, policy, theta);
+            serialDensities[i] = serial.removeAndEvaluateBlock(i, block, measure);
+        }
+        double serialRunningTime = (System.currentTimeMillis() - start + 0.0) / 1000;
+        System.out.println("Serial running time: " + serialRunningTime + " seconds");
+        clear(serialPath);
+
+        for(int i = 0; i < blockNum; i++) {
+            System.out.println("Accuracy of block " + (i+1) + ": " + densities[i] / serialDensities[i] + " (" + densities[i] + " / " + serialDensities[i] + ")");
+        }
+        System.out.println("Speedup: " + serialRunningTime / runningTime);
+    }
+}
@@ -0,0 +1,195 @@
+/* =================================================================================
+ *
+ * D-Cube: Dense-Block Detection in Terabyte-Scale Tensors
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: August 6, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package dcube.parallel;
+
+import dcube.BlockInfo;
+import dcube.Proposed;
+import dcube.Tensor;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Tuples of a part of a tensor (a shard or a restricted tensor)
+ * At most bufferSize tuples are kept in memory, and the others are spilled to the folder of the part
+ * The attribute values are renumbered densely when the part is turned into a tensor,
+ * and the attribute values of the blocks found in the tensor are translated back
+ * @author kijungs
+ */
+class SubTensor {
+
+    private final static String spillAttName = "spill_att";
+    private final static String spillValueName = "spill_value";
+
+    private final int dimension;
+    private final int[] cardinalities; // n -> cardinality of the n-th attribute of the whole tensor
+    private final int bufferSize; // maximum number of tuples kept in memory
+    private final String path; // folder where the tuples beyond the buffer are spilled
+    private int[][] attributes; // (n, i) -> the n-th attribute value of the i-th tuple in memory
+    private int[] values; // i -> measure attribute value of i-th tuple in memory
+    private int bufferUsage = 0;
+    private long size = 0;
+    private long mass = 0;
+    private boolean[][] attValToIncluded; // (n, i) -> whether ith attribute value in the nth mode appears in the part
+    private ObjectOutputStream outAtt = null; // spilled attribute values, null until the buffer is full
+    private ObjectOutputStream outValue = null; // spilled measure values, null until the buffer is full
+    private int[][] idToAttVal = null; // (n, j) -> attribute value in the nth mode renumbered as j
+
+    /**
+     * @param capacity number of tuples that can be added before the arrays grow
+     * @param bufferSize maximum number of tuples kept in memory
+     * @param path folder where the tuples beyond the buffer are spilled, which is also used by the tensor of the part
+     */
+    SubTensor(int dimension, int[] cardinalities, int capacity, int bufferSize, String path) {
+        this.dimension = dimension;
+        this.cardinalities = cardinalities;
+        this.bufferSize = bufferSize;
+        this.path = path;
+        capacity = Math.min(capacity, bufferSize);
+        attributes = new int[dimension][capacity];
+        values = new int[capacity];
+        attValToIncluded = new boolean[dimension][];
+        for(int mode = 0; mode < dimension; mode++) {
+            attValToIncluded[mode] = new boolean[cardinalities[mode]];
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    String path() {
+        return path;
+    }
+
+    void add(int[] attVals, int value) throws IOException {
+        for(int mode = 0; mode < dimension; mode++) {
+            attValToIncluded[mode][attVals[mode]] = true;
+        }
+        size++;
+        mass += value;
+        if(bufferUsage == values.length && values.length < bufferSize) {
+            int capacity = (int) Math.min(bufferSize, Math.max(16L, bufferUsage * 2L));
+            for(int mode = 0; mode < dimension; mode++) {
+                attributes[mode] = Arrays.copyOf(attributes[mode], capacity);
+            }
+            values = Arrays.copyOf(values, capacity);
+        }
+        if(bufferUsage < values.length) {
+            for(int mode = 0; mode < dimension; mode++) {
+                attributes[mode][bufferUsage] = attVals[mode];
+            }
+            values[bufferUsage++] = value;
+            return;
+        }
+        if(outValue == null) {
+            new File(path).mkdir();
+            outAtt = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(path + File.separator + spillAttName), 1048576));
+            outValue = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(path + File.separator + spillValueName), 1048576));
+        }
+        outValue.writeInt(value);
+        for(int mode = 0; mode < dimension; mode++) {
+            outAtt.writeInt(attVals[mode]);
+        }
+    }
+
+    /**
+     * renumber the attribute values in each mode densely in increasing order, and return the tuples as a tensor
+     * the tuples in memory are overwritten, and the spilled tuples are rewritten once with the new numbers
+     */
+    Tensor toTensor() throws IOException {
+        idToAttVal = new int[dimension][];
+        final int[][] attValToId = new int[dimension][];
+        int[] compactCardinalities = new int[dimension];
+        for(int mode = 0; mode < dimension; mode++) {
+            final boolean[] modeAttValToIncluded = attValToIncluded[mode];
+            final int[] modeAttValToId = new int[cardinalities[mode]];
+            int numOfIds = 0;
+            for(int attVal = 0; attVal < cardinalities[mode]; attVal++) {
+                modeAttValToId[attVal] = modeAttValToIncluded[attVal] ? numOfIds++ : -1;
+            }
+            final int[] modeIdToAttVal = new int[numOfIds];
+            for(int attVal = 0; attVal < cardinalities[mode]; attVal++) {
+                if(modeAttValToId[attVal] >= 0) {
+                    modeIdToAttVal[modeAttValToId[attVal]] = attVal;
+                }
+            }
+            final int[] modeAttributes = attributes[mode];
+            for(int i = 0; i < bufferUsage; i++) {
+                modeAttributes[i] = modeAttValToId[modeAttributes[i]];
+            }
+            attValToId[mode] = modeAttValToId;
+            idToAttVal[mode] = modeIdToAttVal;
+            compactCardinalities[mode] = numOfIds;
+        }
+        attValToIncluded = null;
+
+        String attFilePath = path + File.separator + Proposed.originalAttName;
+        String valueFilePath = path + File.separator + Proposed.originalValueName;
+        if(outValue != null) {
+            outValue.writeInt(-1);
+            outAtt.close();
+            outValue.close();
+            outAtt = null;
+            outValue = null;
+            File spillAttFile = new File(path + File.separator + spillAttName);
+            File spillValueFile = new File(path + File.separator + spillValueName);
+            ObjectInputStream inAtt = new ObjectInputStream(new BufferedInputStream(new FileInputStream(spillAttFile), 8388608));
+            ObjectInputStream inValue = new ObjectInputStream(new BufferedInputStream(new FileInputStream(spillValueFile), 8388608));
+            ObjectOutputStream newOutAtt = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(attFilePath), 8388608));
+            ObjectOutputStream newOutValue = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(valueFilePath), 8388608));
+            while(true) {
+                int value = inValue.readInt();
+                newOutValue.writeInt(value);
+                if(value == -1) {
+                    break;
+                }
+                for(int mode = 0; mode < dimension; mode++) {
+                    newOutAtt.writeInt(attValToId[mode][inAtt.readInt()]);
+                }
+            }
+            inAtt.close();
+            inValue.close();
+            newOutAtt.close();
+            newOutValue.close();
+            spillAttFile.delete();
+            spillValueFile.delete();
+        }
+        return new Tensor(dimension, compactCardinalities, attributes, values, size, mass, values.length, bufferUsage, attFilePath, valueFilePath);
+    }
+
+    /**
+     * @param block block found in the tensor returned by toTensor()
+     * @return (n, j) -> jth attribute value of the block in the nth mode, in the attribute values of the whole tensor
+     */
+    int[][] attValsOf(BlockInfo block) throws IOException {
+        Set<Integer>[] modeToIds = block.getAttributeValues(dimension);
+        int[][] modeToAttVals = new int[dimension][];
+        for(int mode = 0; mode < dimension; mode++) {
+            modeToAttVals[mode] = new int[modeToIds[mode].size()];
+            int j = 0;
+            for(int id : modeToIds[mode]) {
+                modeToAttVals[mode][j++] = idToAttVal[mode][id];
+            }
+        }
+        return modeToAttVals;
+    }
+}